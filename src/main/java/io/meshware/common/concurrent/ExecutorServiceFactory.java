@@ -16,7 +16,9 @@
  */
 package io.meshware.common.concurrent;
 
+import java.lang.reflect.Method;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -35,4 +37,20 @@ public class ExecutorServiceFactory {
                 new ThreadPoolExecutor.CallerRunsPolicy());
     }
 
+    /**
+     * Create a virtual-thread-per-task executor when running on JDK 21+. It is loaded reflectively so that the
+     * JDK 8 baseline still compiles and runs.
+     *
+     * @return executor service, or null if virtual threads are not supported
+     */
+    public static ExecutorService createVirtualThreadExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (Exception e) {
+            // 低版本JDK没有该方法，或者预览特性没有开启
+            return null;
+        }
+    }
+
 }
@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.meshware.common.event;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 批量事件处理器，一次处理派发线程凑批取出的事件
+ *
+ * @param <E> 事件类型
+ */
+@FunctionalInterface
+public interface BatchEventHandler<E extends Event> extends EventHandler<E> {
+
+    /**
+     * 按照发布顺序批量处理事件，列表由派发线程复用，只在本次调用内有效，不能持有或修改
+     *
+     * @param events 事件
+     */
+    void handleBatch(List<E> events);
+
+    @Override
+    default void handle(final E event) {
+        handleBatch(Collections.singletonList(event));
+    }
+}
@@ -25,6 +25,12 @@ public class PublisherConfig {
     protected int capacity;
     //入队默认超时时间
     protected long timeout;
+    //环形缓冲区的等待策略，为空则采用阻塞队列
+    protected WaitStrategy waitStrategy;
+    //批量派发的最大条数，小于等于1则逐条派发
+    protected int batchSize;
+    //批量派发等待凑批的最大时间(毫秒)
+    protected long linger;
 
     public PublisherConfig() {
     }
@@ -34,6 +40,20 @@ public class PublisherConfig {
         this.timeout = timeout;
     }
 
+    public PublisherConfig(int capacity, long timeout, WaitStrategy waitStrategy) {
+        this.capacity = capacity;
+        this.timeout = timeout;
+        this.waitStrategy = waitStrategy;
+    }
+
+    public PublisherConfig(int capacity, long timeout, WaitStrategy waitStrategy, int batchSize, long linger) {
+        this.capacity = capacity;
+        this.timeout = timeout;
+        this.waitStrategy = waitStrategy;
+        this.batchSize = batchSize;
+        this.linger = linger;
+    }
+
     public int getCapacity() {
         return capacity;
     }
@@ -50,6 +70,30 @@ public class PublisherConfig {
         this.timeout = timeout;
     }
 
+    public WaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    public void setWaitStrategy(WaitStrategy waitStrategy) {
+        this.waitStrategy = waitStrategy;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public long getLinger() {
+        return linger;
+    }
+
+    public void setLinger(long linger) {
+        this.linger = linger;
+    }
+
     public static Builder builder() {
         return new Builder();
     }
@@ -61,6 +105,9 @@ public class PublisherConfig {
         //队列容量
         protected int capacity;
         protected long timeout;
+        protected WaitStrategy waitStrategy;
+        protected int batchSize;
+        protected long linger;
 
         public Builder capacity(int capacity) {
             this.capacity = capacity;
@@ -72,8 +119,41 @@ public class PublisherConfig {
             return this;
         }
 
+        /**
+         * 采用预分配的环形缓冲区派发，容量向上取整为2的幂，未指定容量时为{@code 8192}
+         *
+         * @param waitStrategy 派发线程的等待策略，为空则采用阻塞队列
+         * @return builder
+         */
+        public Builder waitStrategy(WaitStrategy waitStrategy) {
+            this.waitStrategy = waitStrategy;
+            return this;
+        }
+
+        /**
+         * 派发线程一次最多取出的消息条数，{@link BatchEventHandler}一次收到连续的多条事件
+         *
+         * @param batchSize 最大条数，小于等于1则逐条派发
+         * @return builder
+         */
+        public Builder batchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * 取到的消息不足一批时继续等待的最大时间，用延迟换取更大的批次
+         *
+         * @param linger 最大等待时间(毫秒)，小于等于0则不等待
+         * @return builder
+         */
+        public Builder linger(long linger) {
+            this.linger = linger;
+            return this;
+        }
+
         public PublisherConfig build() {
-            return new PublisherConfig(capacity, timeout);
+            return new PublisherConfig(capacity, timeout, waitStrategy, batchSize, linger);
         }
     }
 
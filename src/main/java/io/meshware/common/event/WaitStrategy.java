@@ -0,0 +1,39 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.meshware.common.event;
+
+/**
+ * 环形缓冲区派发线程没有消息时的等待策略
+ */
+public enum WaitStrategy {
+
+    /**
+     * 一直自旋，延迟最低，始终占用一个CPU
+     */
+    BUSY_SPIN,
+
+    /**
+     * 自旋一段时间后让出CPU，延迟较低，空闲时仍然占用CPU
+     */
+    YIELDING,
+
+    /**
+     * 自旋、让出CPU后挂起，新消息唤醒派发线程，空闲时不占用CPU
+     */
+    SPIN_THEN_PARK
+
+}
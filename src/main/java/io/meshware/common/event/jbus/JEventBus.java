@@ -21,12 +21,18 @@ import io.meshware.common.concurrent.Daemon;
 import io.meshware.common.event.*;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Consumer;
 
 /**
@@ -62,7 +68,17 @@ public class JEventBus implements EventBus {
         /**
          * 消费者
          */
-        protected Consumer<E> consumer = this::publish;
+        protected Consumer<E> consumer = new BatchConsumer<E>() {
+            @Override
+            public void accept(final E event) {
+                publish(event);
+            }
+
+            @Override
+            public void accept(final List<E> events) {
+                publish(events);
+            }
+        };
 
         /**
          * 构造函数
@@ -128,6 +144,47 @@ public class JEventBus implements EventBus {
             }
         }
 
+        /**
+         * 批量发布事件，批量处理器一次处理整批事件，其它处理器逐条处理
+         *
+         * @param events 事件
+         */
+        protected void publish(final List<E> events) {
+            int size = events.size();
+            for (int i = 0; i < size; i++) {
+                if (events.get(i) instanceof Recipient) {
+                    //有指定处理器的事件，保持逐条派发的语义，单条事件异常不影响后续事件
+                    for (int j = 0; j < size; j++) {
+                        try {
+                            publish(events.get(j));
+                        } catch (Throwable e) {
+                            log.error("Error occurs while handling event of " + name, e);
+                        }
+                    }
+                    return;
+                }
+            }
+            for (EventHandler<E> handler : handlerMap.values()) {
+                //处理器之间相互隔离，避免一个处理器异常导致其它处理器丢失整批事件
+                if (handler instanceof BatchEventHandler) {
+                    try {
+                        ((BatchEventHandler<E>) handler).handleBatch(events);
+                    } catch (Throwable e) {
+                        log.error("Error occurs while handling events of " + name, e);
+                    }
+                } else {
+                    //逐条处理的处理器与不凑批时一样，单条事件异常不影响后续事件
+                    for (int i = 0; i < size; i++) {
+                        try {
+                            handler.handle(events.get(i));
+                        } catch (Throwable e) {
+                            log.error("Error occurs while handling event of " + name, e);
+                        }
+                    }
+                }
+            }
+        }
+
         @Override
         public void start() {
             if (polling == null) {
@@ -155,13 +212,13 @@ public class JEventBus implements EventBus {
         @Override
         public boolean offer(final E event) {
             Dispatcher<E> d = polling;
-            return event != null && d != null && d.offer(new Message<>(event, consumer));
+            return event != null && d != null && d.offer(event, consumer);
         }
 
         @Override
         public boolean offer(final E event, final long timeout, final TimeUnit timeUnit) {
             Dispatcher<E> d = polling;
-            return event != null && d != null && d.offer(new Message<>(event, consumer), timeout, timeUnit);
+            return event != null && d != null && d.offer(event, consumer, timeout, timeUnit);
         }
     }
 
@@ -184,6 +241,19 @@ public class JEventBus implements EventBus {
         }
     }
 
+    /**
+     * 支持批量消费的消费者
+     */
+    protected interface BatchConsumer<T> extends Consumer<T> {
+
+        /**
+         * 批量消费
+         *
+         * @param events 事件，派发线程复用该列表
+         */
+        void accept(List<T> events);
+    }
+
     /**
      * 发布线程
      */
@@ -204,10 +274,79 @@ public class JEventBus implements EventBus {
          * 状态
          */
         protected AtomicBoolean started = new AtomicBoolean();
+        /**
+         * 批量派发的最大条数
+         */
+        protected int batchSize;
+        /**
+         * 凑批的最大等待时间(纳秒)
+         */
+        protected long linger;
+        /**
+         * 本批取出的事件，仅派发线程访问，复用
+         */
+        protected List<E> events;
+        /**
+         * 本批事件对应的消费者，仅派发线程访问，复用
+         */
+        protected List<Consumer<E>> consumers;
+        /**
+         * 同一消费者的连续事件，仅派发线程访问，复用
+         */
+        protected List<E> batch;
+        /**
+         * 从队列批量取出的消息，仅派发线程访问，复用
+         */
+        protected List<Message<E>> messages;
 
         public Dispatcher(String name, BlockingQueue<Message<E>> queue) {
+            this(name, queue, 1, 0);
+        }
+
+        /**
+         * 构造函数
+         *
+         * @param name      名称
+         * @param queue     队列
+         * @param batchSize 批量派发的最大条数，小于等于1则逐条派发
+         * @param linger    凑批的最大等待时间(毫秒)
+         */
+        public Dispatcher(String name, BlockingQueue<Message<E>> queue, int batchSize, long linger) {
             this.name = name;
             this.queue = queue;
+            this.batchSize = Math.max(batchSize, 1);
+            this.linger = linger > 0 ? TimeUnit.MILLISECONDS.toNanos(linger) : 0;
+            if (this.batchSize > 1) {
+                int initial = Math.min(this.batchSize, 1024);
+                this.events = new ArrayList<>(initial);
+                this.consumers = new ArrayList<>(initial);
+                this.batch = new ArrayList<>(initial);
+                this.messages = queue == null ? null : new ArrayList<>(initial);
+            }
+        }
+
+        /**
+         * 提供事件
+         *
+         * @param event    事件
+         * @param consumer 消费者
+         * @return 成功标识
+         */
+        public boolean offer(final E event, final Consumer<E> consumer) {
+            return offer(new Message<>(event, consumer));
+        }
+
+        /**
+         * 提供事件
+         *
+         * @param event    事件
+         * @param consumer 消费者
+         * @param timeout  超时时间
+         * @param timeUnit 时间单位
+         * @return 成功标识
+         */
+        public boolean offer(final E event, final Consumer<E> consumer, final long timeout, final TimeUnit timeUnit) {
+            return offer(new Message<>(event, consumer), timeout, timeUnit);
         }
 
         /**
@@ -255,14 +394,113 @@ public class JEventBus implements EventBus {
         protected void publish() {
             try {
                 Message<E> message = queue.poll(5000, TimeUnit.MILLISECONDS);
-                if (message != null) {
+                if (message == null) {
+                    return;
+                } else if (batchSize <= 1) {
                     message.publish();
+                    return;
+                }
+                try {
+                    add(message.event, message.consumer);
+                    int count = drain(1);
+                    long deadline = System.nanoTime() + linger;
+                    long remain;
+                    while (count < batchSize && linger > 0 && (remain = deadline - System.nanoTime()) > 0
+                            && (message = queue.poll(remain, TimeUnit.NANOSECONDS)) != null) {
+                        add(message.event, message.consumer);
+                        count = drain(count + 1);
+                    }
+                } finally {
+                    flush();
                 }
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
             }
         }
 
+        /**
+         * 从队列取出剩余的消息，最多凑满一批
+         *
+         * @param count 本批已取出的条数
+         * @return 本批已取出的条数
+         */
+        protected int drain(final int count) {
+            int size = queue.drainTo(messages, batchSize - count);
+            Message<E> message;
+            for (int i = 0; i < size; i++) {
+                message = messages.get(i);
+                add(message.event, message.consumer);
+            }
+            messages.clear();
+            return count + size;
+        }
+
+        /**
+         * 添加到本批
+         *
+         * @param event    事件
+         * @param consumer 消费者
+         */
+        protected void add(final E event, final Consumer<E> consumer) {
+            events.add(event);
+            consumers.add(consumer);
+        }
+
+        /**
+         * 派发本批事件，同一消费者的连续事件合并派发
+         */
+        @SuppressWarnings("unchecked")
+        protected void flush() {
+            int size = events.size();
+            int start = 0;
+            int end;
+            Consumer<E> consumer;
+            while (start < size) {
+                consumer = consumers.get(start);
+                end = start + 1;
+                while (end < size && consumers.get(end) == consumer) {
+                    end++;
+                }
+                if (end - start > 1 && consumer instanceof BatchConsumer) {
+                    List<E> list = events;
+                    if (end - start < size) {
+                        for (int i = start; i < end; i++) {
+                            batch.add(events.get(i));
+                        }
+                        list = batch;
+                    }
+                    try {
+                        ((BatchConsumer<E>) consumer).accept(list);
+                    } catch (Throwable e) {
+                        log.error("Error occurs while dispatching events of " + name, e);
+                    } finally {
+                        batch.clear();
+                    }
+                } else {
+                    for (int i = start; i < end; i++) {
+                        dispatch(consumer, events.get(i));
+                    }
+                }
+                start = end;
+            }
+            events.clear();
+            consumers.clear();
+        }
+
+        /**
+         * 派发单条事件，处理器异常不影响后续事件
+         *
+         * @param consumer 消费者
+         * @param event    事件
+         */
+        protected void dispatch(final Consumer<E> consumer, final E event) {
+            try {
+                consumer.accept(event);
+            } catch (Throwable e) {
+                log.error("Error occurs while dispatching event of " + name, e);
+            }
+        }
+
 
         /**
          * 停止
@@ -277,6 +515,317 @@ public class JEventBus implements EventBus {
         }
     }
 
+    /**
+     * 基于预分配环形缓冲区的发布线程，支持多生产者单消费者。<br>
+     * 生产者通过CAS申请序号，把事件写入预先分配的槽位后标记该槽位的圈数，入队过程不分配对象也不加锁；
+     * 派发线程按序号批量消费已经发布的槽位，空闲时按照等待策略自旋、让出CPU或挂起
+     */
+    protected static class RingDispatcher<E extends Event> extends Dispatcher<E> {
+        /**
+         * 未指定容量时的默认容量
+         */
+        public static final int DEFAULT_CAPACITY = 8192;
+        /**
+         * 最大容量
+         */
+        protected static final int MAX_CAPACITY = 1 << 30;
+        /**
+         * 空闲时自旋的次数
+         */
+        protected static final int SPINS = 100;
+        /**
+         * 空闲时让出CPU的次数，超过后挂起
+         */
+        protected static final int YIELDS = 100;
+        /**
+         * 缓冲区满时带超时入队的挂起时间(纳秒)
+         */
+        protected static final long FULL_PARK_NANOS = 10000;
+        protected static final AtomicLongFieldUpdater<RingDispatcher> CLAIMED_UPDATER =
+                AtomicLongFieldUpdater.newUpdater(RingDispatcher.class, "claimed");
+        protected static final AtomicLongFieldUpdater<RingDispatcher> CONSUMED_UPDATER =
+                AtomicLongFieldUpdater.newUpdater(RingDispatcher.class, "consumed");
+        protected static final AtomicIntegerFieldUpdater<RingDispatcher> SLEEPING_UPDATER =
+                AtomicIntegerFieldUpdater.newUpdater(RingDispatcher.class, "sleeping");
+        /**
+         * 预分配的槽位
+         */
+        protected final Message<E>[] entries;
+        /**
+         * 槽位已发布的圈数，用于判断槽位是否可以消费
+         */
+        protected final AtomicIntegerArray available;
+        /**
+         * 序号取模的掩码
+         */
+        protected final int mask;
+        /**
+         * 序号计算圈数的位移
+         */
+        protected final int shift;
+        /**
+         * 等待策略
+         */
+        protected final WaitStrategy waitStrategy;
+        /**
+         * 生产者已申请的最大序号
+         */
+        protected volatile long claimed = -1;
+        /**
+         * 派发线程已消费的最大序号
+         */
+        protected volatile long consumed = -1;
+        /**
+         * 生产者缓存的消费序号，减少对消费序号的读取
+         */
+        protected volatile long gating = -1;
+        /**
+         * 派发线程是否挂起
+         */
+        protected volatile int sleeping;
+        /**
+         * 派发线程
+         */
+        protected volatile Thread thread;
+        /**
+         * 派发线程下一个要消费的序号，仅派发线程访问
+         */
+        protected long sequence;
+        /**
+         * 派发线程连续空闲的次数，仅派发线程访问
+         */
+        protected int idles;
+
+        /**
+         * 构造函数
+         *
+         * @param name         名称
+         * @param capacity     容量，向上取整为2的幂
+         * @param waitStrategy 等待策略
+         */
+        public RingDispatcher(final String name, final int capacity, final WaitStrategy waitStrategy) {
+            this(name, capacity, waitStrategy, 1, 0);
+        }
+
+        /**
+         * 构造函数
+         *
+         * @param name         名称
+         * @param capacity     容量，向上取整为2的幂
+         * @param waitStrategy 等待策略
+         * @param batchSize    批量派发的最大条数，小于等于1则逐条派发
+         * @param linger       凑批的最大等待时间(毫秒)
+         */
+        @SuppressWarnings("unchecked")
+        public RingDispatcher(final String name, final int capacity, final WaitStrategy waitStrategy,
+                              final int batchSize, final long linger) {
+            super(name, null, batchSize, linger);
+            int size = capacity <= 1 ? 2 : capacity >= MAX_CAPACITY ? MAX_CAPACITY : Integer.highestOneBit(capacity - 1) << 1;
+            this.entries = new Message[size];
+            this.available = new AtomicIntegerArray(size);
+            for (int i = 0; i < size; i++) {
+                entries[i] = new Message<>(null, null);
+                available.lazySet(i, -1);
+            }
+            this.mask = size - 1;
+            this.shift = Integer.numberOfTrailingZeros(size);
+            this.waitStrategy = waitStrategy == null ? WaitStrategy.SPIN_THEN_PARK : waitStrategy;
+        }
+
+        @Override
+        public boolean offer(final E event, final Consumer<E> consumer) {
+            long seq = claim();
+            if (seq < 0) {
+                return false;
+            }
+            publish(seq, event, consumer);
+            return true;
+        }
+
+        @Override
+        public boolean offer(final E event, final Consumer<E> consumer, final long timeout, final TimeUnit timeUnit) {
+            long seq = claim();
+            if (seq < 0) {
+                //缓冲区满，等待派发线程消费
+                long deadline = System.nanoTime() + (timeUnit == null ? TimeUnit.MILLISECONDS : timeUnit).toNanos(timeout);
+                while (seq < 0) {
+                    if (System.nanoTime() - deadline >= 0 || Thread.currentThread().isInterrupted()) {
+                        return false;
+                    }
+                    LockSupport.parkNanos(this, FULL_PARK_NANOS);
+                    seq = claim();
+                }
+            }
+            publish(seq, event, consumer);
+            return true;
+        }
+
+        @Override
+        public boolean offer(final Message<E> message) {
+            return message != null && offer(message.event, message.consumer);
+        }
+
+        @Override
+        public boolean offer(final Message<E> message, final long timeout, final TimeUnit timeUnit) {
+            return message != null && offer(message.event, message.consumer, timeout, timeUnit);
+        }
+
+        /**
+         * 申请序号
+         *
+         * @return 序号，缓冲区满返回-1
+         */
+        protected long claim() {
+            long current;
+            long next;
+            do {
+                current = claimed;
+                next = current + 1;
+                long wrap = next - entries.length;
+                if (wrap > gating) {
+                    long last = consumed;
+                    gating = last;
+                    if (wrap > last) {
+                        return -1;
+                    }
+                }
+            } while (!CLAIMED_UPDATER.compareAndSet(this, current, next));
+            return next;
+        }
+
+        /**
+         * 写入槽位并发布
+         *
+         * @param seq      序号
+         * @param event    事件
+         * @param consumer 消费者
+         */
+        protected void publish(final long seq, final E event, final Consumer<E> consumer) {
+            int index = (int) seq & mask;
+            Message<E> message = entries[index];
+            message.event = event;
+            message.consumer = consumer;
+            //volatile写，与派发线程挂起前设置的标识构成先写后读的握手，避免丢失唤醒
+            available.set(index, (int) (seq >>> shift));
+            if (sleeping == 1 && SLEEPING_UPDATER.compareAndSet(this, 1, 0)) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        /**
+         * 判断序号对应的槽位是否已经发布
+         *
+         * @param seq 序号
+         * @return 已发布标识
+         */
+        protected boolean isAvailable(final long seq) {
+            return available.get((int) seq & mask) == (int) (seq >>> shift);
+        }
+
+        @Override
+        protected void publish() {
+            long seq = sequence;
+            if (!isAvailable(seq)) {
+                await();
+                return;
+            }
+            idles = 0;
+            Message<E> message;
+            if (batchSize <= 1) {
+                E event;
+                Consumer<E> consumer;
+                do {
+                    message = entries[(int) seq & mask];
+                    event = message.event;
+                    consumer = message.consumer;
+                    message.event = null;
+                    message.consumer = null;
+                    sequence = ++seq;
+                    //释放槽位后再执行，处理器异常不影响后续消息
+                    CONSUMED_UPDATER.lazySet(this, seq - 1);
+                    dispatch(consumer, event);
+                } while (isAvailable(seq));
+                return;
+            }
+            long deadline = System.nanoTime() + linger;
+            int count = 0;
+            while (true) {
+                while (count < batchSize && isAvailable(seq)) {
+                    message = entries[(int) seq & mask];
+                    add(message.event, message.consumer);
+                    message.event = null;
+                    message.consumer = null;
+                    sequence = ++seq;
+                    //凑批期间槽位已经释放，不阻塞生产者
+                    CONSUMED_UPDATER.lazySet(this, seq - 1);
+                    count++;
+                }
+                if (count >= batchSize || linger <= 0 || System.nanoTime() - deadline >= 0) {
+                    break;
+                } else if (waitStrategy == WaitStrategy.YIELDING) {
+                    Thread.yield();
+                } else if (waitStrategy == WaitStrategy.SPIN_THEN_PARK) {
+                    linger(seq, deadline);
+                }
+            }
+            flush();
+        }
+
+        /**
+         * 凑批期间挂起到截止时间，新消息唤醒派发线程
+         *
+         * @param seq      等待的序号
+         * @param deadline 截止时间(纳秒)
+         */
+        protected void linger(final long seq, final long deadline) {
+            thread = Thread.currentThread();
+            sleeping = 1;
+            //与空闲挂起相同的握手，设置挂起标识后再检查一次
+            if (!isAvailable(seq) && started.get()) {
+                LockSupport.parkNanos(this, deadline - System.nanoTime());
+            }
+            sleeping = 0;
+        }
+
+        /**
+         * 没有消息时按照等待策略等待
+         */
+        protected void await() {
+            switch (waitStrategy) {
+                case BUSY_SPIN:
+                    return;
+                case YIELDING:
+                    if (++idles > SPINS) {
+                        Thread.yield();
+                    }
+                    return;
+                default:
+                    if (++idles <= SPINS) {
+                        return;
+                    } else if (idles <= SPINS + YIELDS) {
+                        Thread.yield();
+                        return;
+                    }
+                    thread = Thread.currentThread();
+                    sleeping = 1;
+                    //设置挂起标识后再检查一次，生产者在此之后发布的消息一定能看到挂起标识
+                    if (!isAvailable(sequence) && started.get()) {
+                        LockSupport.park(this);
+                    }
+                    sleeping = 0;
+            }
+        }
+
+        @Override
+        public void stop() {
+            super.stop();
+            Thread t = thread;
+            if (t != null) {
+                LockSupport.unpark(t);
+            }
+        }
+    }
+
     /**
      * 发布器分组
      */
@@ -306,7 +855,12 @@ public class JEventBus implements EventBus {
             this.name = name;
             this.config = config == null ? new PublisherConfig() : config;
             int capacity = this.config.getCapacity();
-            this.dispatcher = new Dispatcher<>("JEventBus-" + name, new LinkedBlockingQueue<>(capacity > 0 ? capacity : Integer.MAX_VALUE));
+            WaitStrategy waitStrategy = this.config.getWaitStrategy();
+            this.dispatcher = waitStrategy == null ?
+                    new Dispatcher<>("JEventBus-" + name, new LinkedBlockingQueue<>(capacity > 0 ? capacity : Integer.MAX_VALUE),
+                            this.config.getBatchSize(), this.config.getLinger()) :
+                    new RingDispatcher<>("JEventBus-" + name, capacity > 0 ? capacity : RingDispatcher.DEFAULT_CAPACITY, waitStrategy,
+                            this.config.getBatchSize(), this.config.getLinger());
         }
 
         protected boolean contains(final String name) {
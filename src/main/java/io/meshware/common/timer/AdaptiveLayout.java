@@ -0,0 +1,207 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.meshware.common.timer;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * 自适应的时间轮布局，采样任务截止时间距离当前的偏移，按照观察到的分布决定每层的跳数。<br>
+ * 每跳时间代表精度，保持不变；底层的跳数覆盖偏移的{@link #PERCENTILE}分位，这部分任务直接进入底层不再级联，
+ * 第二层的跳数覆盖最大的偏移。每个评估周期统计一次新增的样本，底层需要变大或者缩小到四分之一以下时发布新的布局，
+ * 分片在调度线程上切换到新的时间轮，旧时间轮上的任务在它们的槽过期时级联到新的时间轮
+ */
+public class AdaptiveLayout {
+
+    /**
+     * 底层覆盖的偏移分位
+     */
+    public static final double PERCENTILE = 0.99;
+
+    /**
+     * 每层最少的跳数
+     */
+    public static final int MIN_TICKS = 64;
+
+    /**
+     * 每层最多的跳数
+     */
+    public static final int MAX_TICKS = 1 << 16;
+
+    /**
+     * 采样比例的倒数
+     */
+    protected static final int SAMPLE = 16;
+
+    /**
+     * 一个评估周期最少的样本数，样本不足不调整
+     */
+    protected static final int MIN_SAMPLES = 256;
+
+    protected static final AtomicIntegerFieldUpdater<AdaptiveLayout> EVALUATING_UPDATER = AtomicIntegerFieldUpdater
+            .newUpdater(AdaptiveLayout.class, "evaluating");
+
+    /**
+     * 每一跳时间，单位与时钟一致
+     */
+    protected final long tickTime;
+
+    /**
+     * 评估周期，单位与时钟一致
+     */
+    protected final long interval;
+
+    /**
+     * 偏移的分布，单位与时钟一致
+     */
+    protected final Histogram offsets = new Histogram();
+
+    /**
+     * 上一次评估时各个桶的累计样本数
+     */
+    protected final long[] window = new long[Histogram.BUCKETS];
+
+    /**
+     * 本次评估周期内各个桶新增的样本数，只由评估的线程使用
+     */
+    protected final long[] deltas = new long[Histogram.BUCKETS];
+
+    /**
+     * 当前的布局，每个元素是一层的跳数，最后一个元素用于更上层的时间轮
+     */
+    protected volatile int[] layout;
+
+    /**
+     * 下一次评估的时间
+     */
+    protected volatile long deadline;
+
+    /**
+     * 是否有线程在评估
+     */
+    protected volatile int evaluating;
+
+    /**
+     * 发布新布局的次数
+     */
+    protected volatile long relayouts;
+
+    /**
+     * 构造函数
+     *
+     * @param tickTime 每一跳时间
+     * @param ticks    初始的跳数
+     * @param interval 评估周期
+     * @param now      当前时间
+     */
+    public AdaptiveLayout(final long tickTime, final int ticks, final long interval, final long now) {
+        this.tickTime = tickTime;
+        this.interval = interval;
+        this.layout = new int[]{ticks};
+        this.deadline = now + interval;
+    }
+
+    /**
+     * 采样新增任务的偏移
+     *
+     * @param offset 截止时间距离当前的偏移
+     */
+    public void sample(final long offset) {
+        if (offset > 0 && ThreadLocalRandom.current().nextInt(SAMPLE) == 0) {
+            offsets.record(offset);
+        }
+    }
+
+    public int[] getLayout() {
+        return layout;
+    }
+
+    public long getRelayouts() {
+        return relayouts;
+    }
+
+    /**
+     * 到了评估时间则评估一次，由调度线程调用，多个分片只有一个线程评估
+     *
+     * @param now 当前时间
+     * @return 当前的布局
+     */
+    public int[] evaluate(final long now) {
+        if (now < deadline || !EVALUATING_UPDATER.compareAndSet(this, 0, 1)) {
+            return layout;
+        }
+        try {
+            deadline = now + interval;
+            long total = 0;
+            long count;
+            for (int i = 0; i < Histogram.BUCKETS; i++) {
+                count = offsets.getCount(i);
+                deltas[i] = count - window[i];
+                window[i] = count;
+                total += deltas[i];
+            }
+            if (total >= MIN_SAMPLES) {
+                int[] current = layout;
+                int[] target = compute(total);
+                int upper = current.length > 1 ? current[1] : current[0];
+                if (target[0] > current[0] || target[0] * 4 <= current[0] || target[1] > upper) {
+                    layout = target;
+                    relayouts++;
+                }
+            }
+            return layout;
+        } finally {
+            evaluating = 0;
+        }
+    }
+
+    /**
+     * 按照本周期的样本计算布局
+     *
+     * @param total 样本数
+     * @return 布局
+     */
+    protected int[] compute(final long total) {
+        long rank = (long) Math.ceil(total * PERCENTILE);
+        long cumulative = 0;
+        long percentile = -1;
+        long max = 0;
+        for (int i = 0; i < Histogram.BUCKETS; i++) {
+            if (deltas[i] > 0) {
+                cumulative += deltas[i];
+                max = Histogram.getUpperBound(i);
+                if (percentile < 0 && cumulative >= rank) {
+                    percentile = max;
+                }
+            }
+        }
+        int bottom = ticks(percentile, tickTime);
+        return new int[]{bottom, ticks(max, tickTime * bottom)};
+    }
+
+    /**
+     * 覆盖指定偏移需要的跳数，取2的幂
+     *
+     * @param offset   偏移(包含)
+     * @param tickTime 该层每一跳的时间
+     * @return 跳数
+     */
+    protected static int ticks(final long offset, final long tickTime) {
+        long ticks = Math.min(offset / tickTime + 1, MAX_TICKS);
+        return ticks <= MIN_TICKS ? MIN_TICKS : (int) Math.min(Long.highestOneBit(ticks - 1) << 1, MAX_TICKS);
+    }
+}
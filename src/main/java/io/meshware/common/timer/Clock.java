@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.meshware.common.timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 时钟，时间轮按照时钟计算槽和任务的过期时间
+ */
+public interface Clock {
+
+    /**
+     * 系统时钟，墙上时间，会受到NTP等校时的影响
+     */
+    Clock SYSTEM = new Clock() {
+        @Override
+        public long now() {
+            return TimeUtil.now();
+        }
+
+        @Override
+        public long toClockTime(final long wallTime) {
+            return wallTime;
+        }
+    };
+
+    /**
+     * 单调时钟，基于System.nanoTime，由TimeUtil的更新线程缓存，不受校时的影响
+     */
+    Clock MONOTONIC = TimeUtil::monotonic;
+
+    /**
+     * 微秒单调时钟，每次直接读取System.nanoTime，用于亚毫秒精度的定时器
+     */
+    Clock MICROS = new Clock() {
+        @Override
+        public long now() {
+            return TimeUtil.monotonicMicros();
+        }
+
+        @Override
+        public TimeUnit getUnit() {
+            return TimeUnit.MICROSECONDS;
+        }
+    };
+
+    /**
+     * 当前时间，单位为{@link #getUnit()}
+     *
+     * @return 当前时间
+     */
+    long now();
+
+    /**
+     * 时间单位，定时器的一跳时间和任务过期时间都采用该单位
+     *
+     * @return 时间单位，默认为毫秒
+     */
+    default TimeUnit getUnit() {
+        return TimeUnit.MILLISECONDS;
+    }
+
+    /**
+     * 把墙上时间转换成该时钟的时间，按照和当前墙上时间的差值换算
+     *
+     * @param wallTime 墙上时间(毫秒)
+     * @return 时钟时间
+     */
+    default long toClockTime(final long wallTime) {
+        return now() + getUnit().convert(wallTime - TimeUtil.now(), TimeUnit.MILLISECONDS);
+    }
+
+}
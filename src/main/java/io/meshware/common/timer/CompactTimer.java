@@ -0,0 +1,534 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.meshware.common.timer;
+
+import io.meshware.common.concurrent.NamedThreadFactory;
+import io.meshware.common.util.Shutdown;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongConsumer;
+
+/**
+ * 紧凑的时间轮，用于持有数千万个只需要回调编号的超时。<br>
+ * 条目不创建对象，按照列存储在基本类型数组里：过期跳数、编号、槽内的前后指针和代数，每个条目{@link #BYTES_PER_ENTRY}字节，
+ * 数组本身不含引用，垃圾回收不需要扫描。时间轮分层，每层64个槽，第k层每个槽跨越64^k跳，
+ * 底层的槽逐跳过期，上层的槽在下层转满一圈时级联到下层。<br>
+ * 新增、放弃和推进由同一把锁保护，过期的编号先收集到缓冲区，释放锁以后在调度线程上依次回调。<br>
+ * 调度线程等到最早的过期或者级联时间，没有条目时一直等待，新增更早的条目会唤醒它
+ */
+@Slf4j
+public class CompactTimer {
+
+    /**
+     * 每个条目占用的字节数
+     */
+    public static final int BYTES_PER_ENTRY = 8 + 8 + 4 + 4 + 4;
+
+    /**
+     * 每层槽数的位数
+     */
+    protected static final int BITS = 6;
+
+    /**
+     * 每层的槽数
+     */
+    protected static final int SLOTS = 1 << BITS;
+
+    /**
+     * 层数，覆盖全部的跳数
+     */
+    protected static final int LEVELS = (63 + BITS - 1) / BITS;
+
+    /**
+     * 空闲条目的前指针
+     */
+    protected static final int FREE = Integer.MIN_VALUE;
+
+    protected static final AtomicIntegerFieldUpdater<CompactTimer> SLEEPING_UPDATER = AtomicIntegerFieldUpdater
+            .newUpdater(CompactTimer.class, "sleeping");
+
+    /**
+     * 时钟
+     */
+    protected final Clock clock;
+
+    /**
+     * 每一跳时间，单位与时钟一致
+     */
+    protected final long tickTime;
+
+    /**
+     * 过期的回调
+     */
+    protected final LongConsumer expire;
+
+    /**
+     * 锁
+     */
+    protected final Object lock = new Object();
+
+    /**
+     * 条目的过期跳数
+     */
+    protected long[] deadlines;
+
+    /**
+     * 条目的编号
+     */
+    protected long[] ids;
+
+    /**
+     * 槽内的后一个条目，空闲条目指向下一个空闲条目
+     */
+    protected int[] next;
+
+    /**
+     * 槽内的前一个条目，槽的第一个条目存放-(槽序号+1)，空闲条目为{@link #FREE}
+     */
+    protected int[] prev;
+
+    /**
+     * 条目的代数，条目释放后加1，之前的句柄失效
+     */
+    protected int[] generations;
+
+    /**
+     * 各层各槽的第一个条目
+     */
+    protected final int[] heads = new int[LEVELS * SLOTS];
+
+    /**
+     * 第一个空闲条目
+     */
+    protected int free;
+
+    /**
+     * 已经使用过的条目数
+     */
+    protected int used;
+
+    /**
+     * 有效的条目数
+     */
+    protected int size;
+
+    /**
+     * 当前跳数，该跳及之前的条目都已经过期
+     */
+    protected long now;
+
+    /**
+     * 过期编号的缓冲区，只由推进的线程使用
+     */
+    protected long[] expired = new long[1024];
+
+    /**
+     * 调度线程，由调用方推进时为空
+     */
+    protected Thread thread;
+
+    /**
+     * 调度线程是否在等待，1表示等待中
+     */
+    protected volatile int sleeping;
+
+    /**
+     * 调度线程计划醒来的跳数，由锁保护，新增的条目早于该跳数才需要唤醒
+     */
+    protected long wakeup = Long.MAX_VALUE;
+
+    /**
+     * 构造函数，启动调度线程逐跳推进
+     *
+     * @param name     名称
+     * @param tickTime 每一跳时间(毫秒)
+     * @param capacity 初始容量，容量不足时扩容会复制数组，建议按照峰值预估
+     * @param expire   过期的回调，在调度线程上执行，耗时的处理需要转交给其它线程
+     */
+    public CompactTimer(final String name, final long tickTime, final int capacity, final LongConsumer expire) {
+        this(Clock.MONOTONIC, tickTime, capacity, expire);
+        this.thread = new NamedThreadFactory(name == null || name.isEmpty() ? "compact-timer" : name, true)
+                .newThread(this::run);
+        this.thread.start();
+    }
+
+    /**
+     * 构造函数，不启动调度线程，由调用方通过{@link #advance()}推进，可以配合{@link ManualClock}
+     *
+     * @param clock    时钟
+     * @param tickTime 每一跳时间，单位与时钟一致
+     * @param capacity 初始容量
+     * @param expire   过期的回调
+     */
+    public CompactTimer(final Clock clock, final long tickTime, final int capacity, final LongConsumer expire) {
+        if (tickTime <= 0) {
+            throw new IllegalArgumentException("tickTime must be greater than 0");
+        } else if (expire == null) {
+            throw new IllegalArgumentException("expire can not be null");
+        }
+        this.clock = clock == null ? Clock.MONOTONIC : clock;
+        this.tickTime = tickTime;
+        this.expire = expire;
+        int cap = Math.max(capacity, 16);
+        this.deadlines = new long[cap];
+        this.ids = new long[cap];
+        this.next = new int[cap];
+        this.prev = new int[cap];
+        this.generations = new int[cap];
+        this.free = -1;
+        this.now = this.clock.now() / tickTime;
+        Arrays.fill(heads, -1);
+    }
+
+    /**
+     * 添加延迟过期的编号，至少需要一跳
+     *
+     * @param id     编号
+     * @param millis 延迟的毫秒数
+     * @return 句柄，用于放弃
+     */
+    public long delay(final long id, final long millis) {
+        return schedule(id, clock.now() + clock.getUnit().convert(millis, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * 添加在指定时间过期的编号，至少需要一跳
+     *
+     * @param id   编号
+     * @param time 过期时间，墙上时间(毫秒)
+     * @return 句柄，用于放弃
+     */
+    public long add(final long id, final long time) {
+        return schedule(id, clock.toClockTime(time));
+    }
+
+    /**
+     * 添加在指定时钟时间过期的编号
+     *
+     * @param id   编号
+     * @param time 时钟时间
+     * @return 句柄
+     */
+    protected long schedule(final long id, final long time) {
+        // 向上取整到跳，不会提前过期
+        long tick = time / tickTime + (time % tickTime == 0 ? 0 : 1);
+        long handle;
+        boolean earlier;
+        synchronized (lock) {
+            int index = allocate();
+            ids[index] = id;
+            deadlines[index] = Math.max(tick, now + 1);
+            insert(index);
+            size++;
+            handle = ((long) generations[index] << 32) | index;
+            earlier = deadlines[index] < wakeup;
+        }
+        if (earlier) {
+            wakeup();
+        }
+        return handle;
+    }
+
+    /**
+     * 通过句柄放弃
+     *
+     * @param handle 句柄
+     * @return 成功标识，已经过期、已经放弃或者句柄失效返回false
+     */
+    public boolean cancel(final long handle) {
+        int index = (int) handle;
+        int generation = (int) (handle >>> 32);
+        synchronized (lock) {
+            if (index < 0 || index >= used || generations[index] != generation || prev[index] == FREE) {
+                return false;
+            }
+            unlink(index);
+            release(index);
+            size--;
+            return true;
+        }
+    }
+
+    /**
+     * 有效的条目数
+     *
+     * @return 条目数
+     */
+    public int size() {
+        synchronized (lock) {
+            return size;
+        }
+    }
+
+    /**
+     * 当前容量
+     *
+     * @return 容量
+     */
+    public int capacity() {
+        synchronized (lock) {
+            return ids.length;
+        }
+    }
+
+    /**
+     * 推进到时钟的当前时间，回调所有过期的编号。<br>
+     * 只能用于没有调度线程的定时器，过期编号的缓冲区只能由一个线程使用
+     *
+     * @return 过期的数量
+     * @throws IllegalStateException 定时器有调度线程
+     */
+    public int advance() {
+        if (thread != null) {
+            throw new IllegalStateException("compact timer is advanced by its own thread");
+        }
+        return advance(clock.now() / tickTime);
+    }
+
+    /**
+     * 推进到目标跳数，回调所有过期的编号
+     *
+     * @param target 目标跳数
+     * @return 过期的数量
+     */
+    protected int advance(final long target) {
+        int count;
+        synchronized (lock) {
+            count = 0;
+            if (size == 0 && target > now) {
+                // 没有条目，直接跳到目标
+                now = target;
+            }
+            while (now < target) {
+                count = tick(count);
+            }
+        }
+        // 释放锁以后回调，回调里可以继续新增
+        long[] ids = expired;
+        for (int i = 0; i < count; i++) {
+            try {
+                expire.accept(ids[i]);
+            } catch (Throwable e) {
+                log.error("Compact timer expire error! id={}, message={}", ids[i], e.getMessage(), e);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 计算最早需要推进的跳数，即底层最早的过期跳数和上层最早的级联跳数的较小值
+     *
+     * @return 跳数，没有条目返回{@link Long#MAX_VALUE}
+     */
+    protected long earliest() {
+        if (size == 0) {
+            return Long.MAX_VALUE;
+        }
+        long result = Long.MAX_VALUE;
+        long current;
+        long tick;
+        int base;
+        for (int k = 0; k < LEVELS; k++) {
+            current = now >>> (BITS * k);
+            if (k >= 64 / BITS || ((current + 1) << (BITS * k)) >= result) {
+                // 本层及更高层都不会更早
+                break;
+            }
+            base = k * SLOTS;
+            // 条目放入的层保证与当前位置相差1到63个槽
+            for (int d = 1; d < SLOTS; d++) {
+                if (heads[base + (int) ((current + d) & (SLOTS - 1))] >= 0) {
+                    tick = (current + d) << (BITS * k);
+                    if (tick > 0) {
+                        result = Math.min(result, tick);
+                    }
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 推进一跳，先把转满一圈的上层槽级联下来，再收集底层当前槽的条目
+     *
+     * @param count 已经收集的数量
+     * @return 收集后的数量
+     */
+    protected int tick(int count) {
+        long tick = ++now;
+        int level = 1;
+        while (level < LEVELS && (tick & ((1L << (BITS * level)) - 1)) == 0) {
+            level++;
+        }
+        // 从高层到低层级联，级联到下层的条目如果也在本跳级联的槽里会被继续处理
+        for (int k = level - 1; k >= 1; k--) {
+            int slot = k * SLOTS + (int) ((tick >>> (BITS * k)) & (SLOTS - 1));
+            int index = heads[slot];
+            heads[slot] = -1;
+            int following;
+            while (index >= 0) {
+                following = next[index];
+                insert(index);
+                index = following;
+            }
+        }
+        int slot = (int) (tick & (SLOTS - 1));
+        int index = heads[slot];
+        heads[slot] = -1;
+        int following;
+        while (index >= 0) {
+            following = next[index];
+            if (count == expired.length) {
+                expired = Arrays.copyOf(expired, count << 1);
+            }
+            expired[count++] = ids[index];
+            release(index);
+            size--;
+            index = following;
+        }
+        return count;
+    }
+
+    /**
+     * 按照过期跳数放入对应层的槽
+     *
+     * @param index 条目
+     */
+    protected void insert(final int index) {
+        long deadline = deadlines[index];
+        int level = 0;
+        while (level < LEVELS - 1 && (deadline >>> (BITS * level)) - (now >>> (BITS * level)) >= SLOTS) {
+            level++;
+        }
+        int slot = level * SLOTS + (int) ((deadline >>> (BITS * level)) & (SLOTS - 1));
+        int head = heads[slot];
+        next[index] = head;
+        if (head >= 0) {
+            prev[head] = index;
+        }
+        prev[index] = -(slot + 1);
+        heads[slot] = index;
+    }
+
+    /**
+     * 从所在的槽中摘除
+     *
+     * @param index 条目
+     */
+    protected void unlink(final int index) {
+        int before = prev[index];
+        int after = next[index];
+        if (before < 0) {
+            heads[-before - 1] = after;
+        } else {
+            next[before] = after;
+        }
+        if (after >= 0) {
+            prev[after] = before;
+        }
+    }
+
+    /**
+     * 分配条目，没有空闲条目则扩容
+     *
+     * @return 条目
+     */
+    protected int allocate() {
+        int index = free;
+        if (index >= 0) {
+            free = next[index];
+            return index;
+        }
+        if (used == ids.length) {
+            grow();
+        }
+        return used++;
+    }
+
+    /**
+     * 释放条目，代数加1
+     *
+     * @param index 条目
+     */
+    protected void release(final int index) {
+        generations[index]++;
+        prev[index] = FREE;
+        next[index] = free;
+        free = index;
+    }
+
+    /**
+     * 扩容1.5倍
+     */
+    protected void grow() {
+        int cap = ids.length;
+        int capacity = (int) Math.min(Integer.MAX_VALUE - 8L, cap + (cap >> 1) + 1L);
+        if (capacity <= cap) {
+            throw new IllegalStateException("compact timer is full");
+        }
+        deadlines = Arrays.copyOf(deadlines, capacity);
+        ids = Arrays.copyOf(ids, capacity);
+        next = Arrays.copyOf(next, capacity);
+        prev = Arrays.copyOf(prev, capacity);
+        generations = Arrays.copyOf(generations, capacity);
+    }
+
+    /**
+     * 调度线程的主循环
+     */
+    protected void run() {
+        long target;
+        long time;
+        while (!Shutdown.isShutdown()) {
+            try {
+                advance(clock.now() / tickTime);
+                synchronized (lock) {
+                    target = earliest();
+                    // 在锁内声明等待，之后新增更早的条目会唤醒调度线程
+                    wakeup = target;
+                    sleeping = 1;
+                }
+                if (target == Long.MAX_VALUE) {
+                    LockSupport.park(this);
+                } else {
+                    time = target > Long.MAX_VALUE / tickTime ? Long.MAX_VALUE : target * tickTime - clock.now();
+                    if (time > 0) {
+                        LockSupport.parkNanos(this, clock.getUnit().toNanos(time));
+                    }
+                }
+                sleeping = 0;
+            } catch (Throwable e) {
+                log.error(e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * 新增更早的条目后唤醒等待中的调度线程
+     */
+    protected void wakeup() {
+        if (sleeping == 1 && SLEEPING_UPDATER.compareAndSet(this, 1, 0)) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+}
@@ -0,0 +1,370 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.meshware.common.timer;
+
+import java.util.TimeZone;
+
+/**
+ * 预编译的Cron表达式，每个字段编译成一个位图，计算下一次执行时间不分配对象。<br>
+ * 支持6个字段(秒 分 时 日 月 周)或者5个字段(分 时 日 月 周，秒固定为0)，字段支持*、?、列表(,)、范围(-)和步长(/)，
+ * 月和周支持英文缩写，周的0和7都表示周日。日和周都有限制时满足其中一个即可，和标准的cron一致，不支持L、W和#。<br>
+ * 夏令时跳过的本地时间不会执行，重复的本地时间只执行一次
+ */
+public class CronExpression {
+
+    protected static final String[] MONTHS = {"JAN", "FEB", "MAR", "APR", "MAY", "JUN", "JUL", "AUG", "SEP", "OCT", "NOV", "DEC"};
+
+    protected static final String[] DAYS = {"SUN", "MON", "TUE", "WED", "THU", "FRI", "SAT"};
+
+    protected static final long SECONDS_PER_DAY = 86400;
+
+    /**
+     * 最多向后搜索的年数，闰年2月29日加上星期的组合最长28年出现一次
+     */
+    protected static final int MAX_YEARS = 400;
+
+    /**
+     * 表达式
+     */
+    protected final String expression;
+
+    /**
+     * 时区
+     */
+    protected final TimeZone timeZone;
+
+    /**
+     * 秒，0-59
+     */
+    protected final long seconds;
+
+    /**
+     * 分，0-59
+     */
+    protected final long minutes;
+
+    /**
+     * 时，0-23
+     */
+    protected final long hours;
+
+    /**
+     * 日，1-31
+     */
+    protected final long daysOfMonth;
+
+    /**
+     * 月，1-12
+     */
+    protected final long months;
+
+    /**
+     * 周，0-6，0表示周日
+     */
+    protected final long daysOfWeek;
+
+    /**
+     * 日没有限制
+     */
+    protected final boolean anyDayOfMonth;
+
+    /**
+     * 周没有限制
+     */
+    protected final boolean anyDayOfWeek;
+
+    /**
+     * 构造函数，采用默认时区
+     *
+     * @param expression 表达式
+     */
+    public CronExpression(final String expression) {
+        this(expression, TimeZone.getDefault());
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param expression 表达式
+     * @param timeZone   时区
+     */
+    public CronExpression(final String expression, final TimeZone timeZone) {
+        if (expression == null) {
+            throw new IllegalArgumentException("expression can not be null");
+        }
+        String[] fields = expression.trim().toUpperCase().split("\\s+");
+        if (fields.length != 5 && fields.length != 6) {
+            throw new IllegalArgumentException("cron expression must have 5 or 6 fields, " + expression);
+        }
+        int i = fields.length == 6 ? 0 : -1;
+        this.expression = expression;
+        this.timeZone = timeZone == null ? TimeZone.getDefault() : timeZone;
+        this.seconds = i < 0 ? 1L : parse(fields[i], 0, 59, null, expression);
+        this.minutes = parse(fields[i + 1], 0, 59, null, expression);
+        this.hours = parse(fields[i + 2], 0, 23, null, expression);
+        this.daysOfMonth = parse(fields[i + 3], 1, 31, null, expression);
+        this.months = parse(fields[i + 4], 1, 12, MONTHS, expression);
+        long dow = parse(fields[i + 5], 0, 7, DAYS, expression);
+        // 7和0都是周日
+        this.daysOfWeek = (dow | dow >>> 7) & 0x7F;
+        this.anyDayOfMonth = isAny(fields[i + 3]);
+        this.anyDayOfWeek = isAny(fields[i + 5]);
+        if (next(System.currentTimeMillis()) < 0) {
+            throw new IllegalArgumentException("cron expression never fires, " + expression);
+        }
+    }
+
+    /**
+     * 是否是没有限制的字段
+     *
+     * @param field 字段
+     * @return 没有限制标识
+     */
+    protected static boolean isAny(final String field) {
+        return field.equals("*") || field.equals("?");
+    }
+
+    /**
+     * 解析字段为位图
+     *
+     * @param field      字段
+     * @param min        最小值
+     * @param max        最大值
+     * @param names      名称，下标加最小值为取值
+     * @param expression 表达式
+     * @return 位图
+     */
+    protected static long parse(final String field, final int min, final int max, final String[] names,
+                                final String expression) {
+        long bits = 0;
+        for (String part : field.split(",")) {
+            int step = 1;
+            int slash = part.indexOf('/');
+            if (slash >= 0) {
+                step = value(part.substring(slash + 1), 1, Integer.MAX_VALUE, null, 0, expression);
+                part = part.substring(0, slash);
+            }
+            int from;
+            int to;
+            if (part.equals("*") || part.equals("?")) {
+                from = min;
+                to = max;
+            } else {
+                int dash = part.indexOf('-');
+                if (dash > 0) {
+                    from = value(part.substring(0, dash), min, max, names, min, expression);
+                    to = value(part.substring(dash + 1), min, max, names, min, expression);
+                    if (to < from) {
+                        throw new IllegalArgumentException("invalid range " + part + " of cron expression " + expression);
+                    }
+                } else {
+                    from = value(part, min, max, names, min, expression);
+                    // a/b表示从a开始到最大值
+                    to = slash >= 0 ? max : from;
+                }
+            }
+            for (int v = from; v <= to; v += step) {
+                bits |= 1L << v;
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * 解析取值
+     *
+     * @param value      文本
+     * @param min        最小值
+     * @param max        最大值
+     * @param names      名称
+     * @param base       名称对应的起始值
+     * @param expression 表达式
+     * @return 取值
+     */
+    protected static int value(final String value, final int min, final int max, final String[] names,
+                               final int base, final String expression) {
+        if (names != null) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(value)) {
+                    return i + base;
+                }
+            }
+        }
+        int result;
+        try {
+            result = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid value " + value + " of cron expression " + expression);
+        }
+        if (result < min || result > max) {
+            throw new IllegalArgumentException("value " + value + " of cron expression " + expression
+                    + " is out of range [" + min + "," + max + "]");
+        }
+        return result;
+    }
+
+    /**
+     * 计算下一次执行时间，不分配对象
+     *
+     * @param time 时间(毫秒)
+     * @return 晚于该时间的下一次执行时间(毫秒)，不会再执行返回-1
+     */
+    public long next(final long time) {
+        // 本地时间的秒数，严格晚于给定的时间
+        long local = Math.floorDiv(time + timeZone.getOffset(time), 1000L) + 1;
+        long limit = local + MAX_YEARS * 366L * SECONDS_PER_DAY;
+        while (local < limit) {
+            long days = Math.floorDiv(local, SECONDS_PER_DAY);
+            int secondOfDay = (int) (local - days * SECONDS_PER_DAY);
+            // 由天数计算年月日
+            long z = days + 719468;
+            long era = Math.floorDiv(z, 146097);
+            int doe = (int) (z - era * 146097);
+            int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+            int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+            int mp = (5 * doy + 2) / 153;
+            int day = doy - (153 * mp + 2) / 5 + 1;
+            int month = mp < 10 ? mp + 3 : mp - 9;
+            long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+            if ((months & (1L << month)) == 0) {
+                int m = nextBit(months, month + 1);
+                local = m < 0 ? toDays(year + 1, nextBit(months, 1), 1) * SECONDS_PER_DAY
+                        : toDays(year, m, 1) * SECONDS_PER_DAY;
+                continue;
+            }
+            if (!matchDay(day, (int) Math.floorMod(days + 4, 7L))) {
+                if (anyDayOfWeek) {
+                    // 只有日有限制，直接跳到下一个满足的日
+                    int d = nextBit(daysOfMonth, day + 1);
+                    local = d < 0 || d > lengthOfMonth(year, month) ? toDays(year, month, 1) * SECONDS_PER_DAY
+                            + lengthOfMonth(year, month) * SECONDS_PER_DAY : (days + d - day) * SECONDS_PER_DAY;
+                } else {
+                    local = (days + 1) * SECONDS_PER_DAY;
+                }
+                continue;
+            }
+            int hour = secondOfDay / 3600;
+            if ((hours & (1L << hour)) == 0) {
+                int h = nextBit(hours, hour + 1);
+                local = h < 0 ? (days + 1) * SECONDS_PER_DAY : days * SECONDS_PER_DAY + h * 3600L;
+                continue;
+            }
+            int minute = secondOfDay / 60 % 60;
+            if ((minutes & (1L << minute)) == 0) {
+                int m = nextBit(minutes, minute + 1);
+                local = m < 0 ? days * SECONDS_PER_DAY + (hour + 1) * 3600L : days * SECONDS_PER_DAY + hour * 3600L + m * 60L;
+                continue;
+            }
+            int second = secondOfDay % 60;
+            if ((seconds & (1L << second)) == 0) {
+                int s = nextBit(seconds, second + 1);
+                local = s < 0 ? local - second + 60 : local - second + s;
+                continue;
+            }
+            // 本地时间转换为UTC
+            long localMillis = local * 1000L;
+            long utc = localMillis - timeZone.getOffset(localMillis - timeZone.getOffset(localMillis));
+            long actual = utc + timeZone.getOffset(utc);
+            if (actual != localMillis || utc <= time) {
+                // 夏令时跳过的本地时间，或者重复的本地时间已经执行过
+                local++;
+                continue;
+            }
+            return utc;
+        }
+        return -1;
+    }
+
+    /**
+     * 日期是否满足日和周的限制
+     *
+     * @param day       日
+     * @param dayOfWeek 周
+     * @return 满足标识
+     */
+    protected boolean matchDay(final int day, final int dayOfWeek) {
+        boolean dom = (daysOfMonth & (1L << day)) != 0;
+        boolean dow = (daysOfWeek & (1L << dayOfWeek)) != 0;
+        return anyDayOfMonth || anyDayOfWeek ? dom && dow : dom || dow;
+    }
+
+    /**
+     * 从指定位置开始的下一个设置位
+     *
+     * @param bits 位图
+     * @param from 开始位置
+     * @return 位置，没有返回-1
+     */
+    protected static int nextBit(final long bits, final int from) {
+        if (from >= 64) {
+            return -1;
+        }
+        long masked = bits & (-1L << from);
+        return masked == 0 ? -1 : Long.numberOfTrailingZeros(masked);
+    }
+
+    /**
+     * 月的天数
+     *
+     * @param year  年
+     * @param month 月
+     * @return 天数
+     */
+    protected static int lengthOfMonth(final long year, final int month) {
+        switch (month) {
+            case 2:
+                return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * 年月日转换为1970-01-01以来的天数
+     *
+     * @param year  年
+     * @param month 月
+     * @param day   日
+     * @return 天数
+     */
+    protected static long toDays(final long year, final int month, final int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        int yoe = (int) (y - era * 400);
+        int doy = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    public TimeZone getTimeZone() {
+        return timeZone;
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+}
@@ -16,6 +16,8 @@
  */
 package io.meshware.common.timer;
 
+import java.util.concurrent.Executor;
+
 /**
  * 代理任务
  */
@@ -36,6 +38,16 @@ public class DelegateTask implements TimeTask {
      */
     protected Runnable runnable;
 
+    /**
+     * 执行器
+     */
+    protected Executor executor;
+
+    /**
+     * 执行通道
+     */
+    protected Lane lane;
+
     /**
      * 构造函数
      *
@@ -44,9 +56,37 @@ public class DelegateTask implements TimeTask {
      * @param runnable 执行代码
      */
     public DelegateTask(final String name, final long time, final Runnable runnable) {
+        this(name, time, runnable, null);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param name     名称
+     * @param time     时间
+     * @param runnable 执行代码
+     * @param executor 执行器，为空则使用时间轮默认的执行器
+     */
+    public DelegateTask(final String name, final long time, final Runnable runnable, final Executor executor) {
+        this(name, time, runnable, executor, Lane.NORMAL);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param name     名称
+     * @param time     时间
+     * @param runnable 执行代码
+     * @param executor 执行器，为空则使用执行通道的执行器
+     * @param lane     执行通道
+     */
+    public DelegateTask(final String name, final long time, final Runnable runnable, final Executor executor,
+                        final Lane lane) {
         this.name = name;
         this.time = time;
         this.runnable = runnable;
+        this.executor = executor;
+        this.lane = lane == null ? Lane.NORMAL : lane;
     }
 
     @Override
@@ -59,6 +99,16 @@ public class DelegateTask implements TimeTask {
         return time;
     }
 
+    @Override
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    @Override
+    public Lane getLane() {
+        return lane;
+    }
+
     @Override
     public void run() {
         if (runnable != null) {
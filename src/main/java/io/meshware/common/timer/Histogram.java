@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.meshware.common.timer;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无锁直方图，按照2的幂次分桶，第i个桶统计[2^(i-1), 2^i)之间的值，小于1的值落在第0个桶。<br>
+ * 每个桶采用分段计数器，多线程记录没有竞争，读取时不加锁也不分配对象
+ */
+public class Histogram {
+
+    /**
+     * 桶的数量
+     */
+    public static final int BUCKETS = 64;
+
+    /**
+     * 每个桶的计数
+     */
+    protected final LongAdder[] counts = new LongAdder[BUCKETS];
+
+    /**
+     * 累计值
+     */
+    protected final LongAdder sum = new LongAdder();
+
+    public Histogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * 记录一个值
+     *
+     * @param value 值
+     */
+    public void record(final long value) {
+        if (value <= 0) {
+            counts[0].increment();
+        } else {
+            counts[Math.min(64 - Long.numberOfLeadingZeros(value), BUCKETS - 1)].increment();
+            sum.add(value);
+        }
+    }
+
+    /**
+     * 获取桶的计数
+     *
+     * @param bucket 桶
+     * @return 计数
+     */
+    public long getCount(final int bucket) {
+        return counts[bucket].sum();
+    }
+
+    /**
+     * 获取总计数
+     *
+     * @return 总计数
+     */
+    public long getCount() {
+        long result = 0;
+        for (LongAdder count : counts) {
+            result += count.sum();
+        }
+        return result;
+    }
+
+    /**
+     * 获取累计值，小于1的值不累计
+     *
+     * @return 累计值
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * 获取桶的上界(包含)
+     *
+     * @param bucket 桶
+     * @return 上界
+     */
+    public static long getUpperBound(final int bucket) {
+        return bucket == 0 ? 0 : bucket >= BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+
+    /**
+     * 获取百分位数，返回所在桶的上界，最多放大一倍
+     *
+     * @param percentile 百分位，取值[0, 1]
+     * @return 百分位数，没有数据返回0
+     */
+    public long getPercentile(final double percentile) {
+        long total = getCount();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * Math.min(Math.max(percentile, 0), 1));
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += counts[i].sum();
+            if (count >= rank && count > 0) {
+                return getUpperBound(i);
+            }
+        }
+        return getUpperBound(BUCKETS - 1);
+    }
+
+}
@@ -0,0 +1,230 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.meshware.common.timer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.function.Consumer;
+
+/**
+ * 按键管理的可刷新超时，适用于空闲连接、心跳检测等场景。<br>
+ * 每个键在时间轮上只有一个任务，{@link #touch(Object, long)}只把任务的截止时间原地向后推，不分配对象也不重新入队；
+ * 原来的槽过期时发现截止时间已经推后，再重新放入对应的槽。
+ *
+ * @param <K> 键
+ */
+public class KeyedTimeouts<K> {
+
+    /**
+     * 时间轮
+     */
+    protected final Timer timer;
+
+    /**
+     * 名称
+     */
+    protected final String name;
+
+    /**
+     * 过期的消费者
+     */
+    protected final Consumer<K> expire;
+
+    /**
+     * 键对应的任务
+     */
+    protected final Map<K, Entry<K>> entries = new ConcurrentHashMap<>();
+
+    /**
+     * 构造函数
+     *
+     * @param timer  时间轮
+     * @param name   名称
+     * @param expire 过期的消费者
+     */
+    public KeyedTimeouts(final Timer timer, final String name, final Consumer<K> expire) {
+        if (timer == null) {
+            throw new IllegalArgumentException("timer can not be null");
+        } else if (expire == null) {
+            throw new IllegalArgumentException("expire can not be null");
+        }
+        this.timer = timer;
+        this.name = name;
+        this.expire = expire;
+    }
+
+    /**
+     * 刷新键的截止时间，只会向后推迟。键不存在或者已经过期则新建任务
+     *
+     * @param key      键
+     * @param deadline 截止时间，墙上时间
+     * @return 新建任务返回true，原地刷新返回false
+     */
+    public boolean touch(final K key, final long deadline) {
+        if (key == null) {
+            return false;
+        }
+        long time = timer.align(timer.clock.toClockTime(deadline));
+        Entry<K> entry;
+        while (true) {
+            entry = entries.get(key);
+            if (entry != null) {
+                if (entry.touch(time)) {
+                    return false;
+                }
+                // 已经过期或者放弃，移除后重新创建
+                entries.remove(key, entry);
+            } else {
+                Timer.Shard shard = timer.shard();
+                entry = new Entry<>(this, key, timer.getLeastOneTick(time), shard);
+                if (entries.putIfAbsent(key, entry) == null) {
+                    timer.add(entry, shard);
+                    return true;
+                }
+            }
+        }
+    }
+
+    /**
+     * 移除键，放弃对应的任务
+     *
+     * @param key 键
+     * @return 成功标识
+     */
+    public boolean remove(final K key) {
+        Entry<K> entry = key == null ? null : entries.remove(key);
+        return entry != null && entry.cancel();
+    }
+
+    /**
+     * 获取键对应的超时对象
+     *
+     * @param key 键
+     * @return 超时对象
+     */
+    public Timeout get(final K key) {
+        return key == null ? null : entries.get(key);
+    }
+
+    /**
+     * 跟踪的键数量
+     *
+     * @return 数量
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * 键对应的任务
+     *
+     * @param <K> 键
+     */
+    protected static class Entry<K> extends Timer.Task {
+
+        @SuppressWarnings("unchecked")
+        protected static final AtomicLongFieldUpdater<Entry<?>> DEADLINE_UPDATER = AtomicLongFieldUpdater
+                .newUpdater((Class<Entry<?>>) (Class<?>) Entry.class, "deadline");
+
+        /**
+         * 截止时间的标记值，表示已经开始过期，不能再刷新
+         */
+        protected static final long EXPIRING = Long.MIN_VALUE;
+
+        /**
+         * 所属的可刷新超时
+         */
+        protected final KeyedTimeouts<K> owner;
+
+        /**
+         * 键
+         */
+        protected final K key;
+
+        /**
+         * 截止时间，可以被其它线程推后，开始过期后为{@link #EXPIRING}
+         */
+        protected volatile long deadline;
+
+        /**
+         * 构造函数
+         *
+         * @param owner    所属的可刷新超时
+         * @param key      键
+         * @param deadline 截止时间
+         * @param shard    分片
+         */
+        public Entry(final KeyedTimeouts<K> owner, final K key, final long deadline, final Timer.Shard shard) {
+            super(owner.name, deadline, null, shard);
+            this.owner = owner;
+            this.key = key;
+            this.deadline = deadline;
+            this.runnable = this::expire;
+        }
+
+        @Override
+        protected long getTime() {
+            long d = deadline;
+            return d == EXPIRING ? time : d;
+        }
+
+        /**
+         * 推后截止时间
+         *
+         * @param time 截止时间
+         * @return 任务仍然有效返回true，已经开始过期或者放弃返回false
+         */
+        protected boolean touch(final long time) {
+            long current;
+            while ((current = deadline) != EXPIRING) {
+                if (time <= current || DEADLINE_UPDATER.compareAndSet(this, current, time)) {
+                    return (stamp & STATE_MASK) == INIT;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void run() {
+            long now = owner.timer.clock.now();
+            long current;
+            while ((stamp & STATE_MASK) == INIT && (current = deadline) != EXPIRING) {
+                if (current > now) {
+                    // 槽过期后到执行之前又被刷新，重新放入时间轮，计数保持不变
+                    shard.offer(this);
+                    return;
+                }
+                time = current;
+                // 标记开始过期，之后的刷新都会失败，由调用方重新创建
+                if (DEADLINE_UPDATER.compareAndSet(this, current, EXPIRING)) {
+                    break;
+                }
+            }
+            super.run();
+        }
+
+        /**
+         * 过期
+         */
+        protected void expire() {
+            owner.entries.remove(key, this);
+            owner.expire.accept(key);
+        }
+    }
+
+}
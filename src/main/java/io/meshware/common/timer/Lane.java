@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.meshware.common.timer;
+
+/**
+ * 执行通道，不同通道的过期任务由不同的执行器执行，耗时的任务不会拖慢超时回调
+ */
+public enum Lane {
+
+    /**
+     * 快速通道，用于超时通知等微小的回调
+     */
+    FAST,
+
+    /**
+     * 普通通道，默认的通道
+     */
+    NORMAL,
+
+    /**
+     * 阻塞通道，用于刷新、IO等耗时的任务
+     */
+    BLOCKING;
+
+    /**
+     * 降级后的通道
+     *
+     * @return 下一个更慢的通道
+     */
+    public Lane demote() {
+        return this == FAST ? NORMAL : BLOCKING;
+    }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.meshware.common.timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 手动时钟，由调用方推进，用于模拟和测试
+ */
+public class ManualClock implements Clock {
+
+    /**
+     * 当前时间
+     */
+    protected volatile long now;
+
+    /**
+     * 时间单位
+     */
+    protected TimeUnit unit;
+
+    /**
+     * 构造函数
+     *
+     * @param now 初始时间(毫秒)
+     */
+    public ManualClock(final long now) {
+        this(now, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param now  初始时间
+     * @param unit 时间单位
+     */
+    public ManualClock(final long now, final TimeUnit unit) {
+        this.now = now;
+        this.unit = unit == null ? TimeUnit.MILLISECONDS : unit;
+    }
+
+    @Override
+    public long now() {
+        return now;
+    }
+
+    @Override
+    public TimeUnit getUnit() {
+        return unit;
+    }
+
+    /**
+     * 墙上时间直接换算成时钟时间，便于按照录制的时间戳回放
+     *
+     * @param wallTime 墙上时间(毫秒)
+     * @return 时钟时间
+     */
+    @Override
+    public long toClockTime(final long wallTime) {
+        return unit.convert(wallTime, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 设置当前时间，只能向后推进
+     *
+     * @param time 时间
+     */
+    public void set(final long time) {
+        if (time > now) {
+            now = time;
+        }
+    }
+
+}
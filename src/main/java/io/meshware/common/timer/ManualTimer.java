@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.meshware.common.timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 手动推进的定时器，没有调度线程和工作线程。<br>
+ * 调用方通过{@link #advance(long)}推进时钟，推进过程中所有到期的任务在调用线程里按照过期时间同步执行，
+ * 相同的操作序列每次得到相同的结果，可以在几秒内回放数小时的超时流量，并精确统计时间轮的级联次数。
+ */
+public class ManualTimer extends Timer {
+
+    /**
+     * 构造函数，一跳1毫秒，512跳，从0开始计时
+     */
+    public ManualTimer() {
+        this(1, 512, 0);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param tickTime 每一跳时间(毫秒)
+     * @param ticks    时间轮有几条
+     * @param start    起始时间(毫秒)
+     */
+    public ManualTimer(final long tickTime, final int ticks, final long start) {
+        this(tickTime, ticks, new ManualClock(start));
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param tickTime 每一跳时间，单位与时钟一致
+     * @param ticks    时间轮有几条
+     * @param clock    手动时钟
+     */
+    public ManualTimer(final long tickTime, final int ticks, final ManualClock clock) {
+        super(builder().name("manual-timer").tickTime(tickTime).ticks(ticks).shards(1)
+                .driver(Driver.MANUAL).executor(INLINE).clock(clock));
+    }
+
+    @Override
+    public ManualClock getClock() {
+        return (ManualClock) clock;
+    }
+
+    /**
+     * 时钟向后推进指定的时间，同步执行期间到期的任务
+     *
+     * @param time     推进的时间
+     * @param timeUnit 时间单位
+     */
+    public void advance(final long time, final TimeUnit timeUnit) {
+        advanceTo(clock.now() + unit.convert(time, timeUnit));
+    }
+
+    /**
+     * 时钟向后推进指定的毫秒数，同步执行期间到期的任务
+     *
+     * @param millis 推进的毫秒数
+     */
+    public void advance(final long millis) {
+        advanceTo(clock.now() + toClockDuration(millis));
+    }
+
+    /**
+     * 时钟推进到指定时间，同步执行期间到期的任务。<br>
+     * 时间轮逐跳推进，每一跳执行前先把时钟设置为该跳的时间，任务在执行过程中新增的任务如果在推进范围内也会被执行
+     *
+     * @param time 时钟时间
+     */
+    public synchronized void advanceTo(final long time) {
+        ManualClock manual = (ManualClock) clock;
+        Shard shard = shards[0];
+        drain(shard);
+        while (shard.timeWheel.now + tickTime <= time) {
+            long next = shard.next(time);
+            manual.set(next);
+            shard.expire(next);
+            drain(shard);
+        }
+        manual.set(time);
+    }
+
+    /**
+     * 把新增的任务全部放入时间轮，已经到期的任务直接执行
+     *
+     * @param shard 分片
+     */
+    protected void drain(final Shard shard) {
+        while (shard.supply()) {
+            // 分配任务有上限，一直分配到没有积压
+        }
+    }
+
+}
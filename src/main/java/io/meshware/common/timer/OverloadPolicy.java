@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.meshware.common.timer;
+
+/**
+ * 过载策略，待处理的任务超过上限时如何处理新增的任务。
+ * 有界的工作队列满了不采用该策略，过期的任务被拒绝，不在调度线程上执行
+ */
+public enum OverloadPolicy {
+
+    /**
+     * 抛出RejectedExecutionException
+     */
+    ABORT,
+
+    /**
+     * 调用方等待到有空闲的容量，超过等待时间抛出RejectedExecutionException
+     */
+    BLOCK,
+
+    /**
+     * 由调用方立即执行任务
+     */
+    CALLER_RUNS,
+
+    /**
+     * 放弃时间轮中过期时间最远的任务来腾出容量，新增任务本身最远则放弃新增的任务。
+     * 周期任务不会被放弃
+     */
+    DISCARD_FURTHEST
+
+}
@@ -0,0 +1,311 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.meshware.common.timer;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 合并的周期桶，相同周期的轻量任务共用时间轮上的一个周期任务，适用于连接统计刷新之类数量大、耗时短的场景。<br>
+ * 成员存放在紧凑的数组里，注销时把最后一个成员移到空位，O(1)完成。每个周期先在锁内复制成员的快照，
+ * 再在锁外批量执行，成员数超过分块大小时按块分发到工作线程并行执行。上一周期的分块还没有执行完毕则跳过本周期
+ */
+@Slf4j
+public class PeriodicBucket {
+
+    /**
+     * 默认的分块大小
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1024;
+
+    /**
+     * 时间轮
+     */
+    protected final Timer timer;
+
+    /**
+     * 名称
+     */
+    protected final String name;
+
+    /**
+     * 周期(毫秒)
+     */
+    protected final long interval;
+
+    /**
+     * 分块大小
+     */
+    protected final int chunkSize;
+
+    /**
+     * 分块的执行器
+     */
+    protected final Executor executor;
+
+    /**
+     * 成员，前size个有效
+     */
+    protected Member[] members = new Member[16];
+
+    /**
+     * 成员数量
+     */
+    protected int size;
+
+    /**
+     * 本周期的快照，只在上一周期执行完毕后复用
+     */
+    protected Member[] snapshot = new Member[16];
+
+    /**
+     * 本周期还没有执行完毕的分块数加1，最后完成的块清理快照以后才归零
+     */
+    protected final AtomicInteger pending = new AtomicInteger();
+
+    /**
+     * 因为上一周期没有执行完毕而跳过的周期数，加上执行器拒绝而跳过的分块数
+     */
+    protected final LongAdder overruns = new LongAdder();
+
+    /**
+     * 时间轮上的周期任务
+     */
+    protected Timeout timeout;
+
+    /**
+     * 构造函数，创建后即开始调度
+     *
+     * @param timer     时间轮
+     * @param name      名称
+     * @param interval  周期(毫秒)
+     * @param chunkSize 分块大小，小于等于0表示不分块
+     */
+    public PeriodicBucket(final Timer timer, final String name, final long interval, final int chunkSize) {
+        if (timer == null) {
+            throw new IllegalArgumentException("timer can not be null");
+        } else if (interval <= 0) {
+            throw new IllegalArgumentException("interval must be greater than 0");
+        }
+        this.timer = timer;
+        this.name = name == null || name.isEmpty() ? "bucket-" + interval : name;
+        this.interval = interval;
+        this.chunkSize = chunkSize <= 0 ? Integer.MAX_VALUE : chunkSize;
+        this.executor = timer.lanes[Lane.NORMAL.ordinal()];
+        this.timeout = timer.schedulePeriodic(this.name, interval, interval, ScheduleMode.FIXED_RATE, this::tick);
+    }
+
+    /**
+     * 注册成员
+     *
+     * @param runnable 每个周期执行的任务，需要耗时很短
+     * @return 超时对象，放弃即注销
+     */
+    public Timeout register(final Runnable runnable) {
+        if (runnable == null) {
+            return null;
+        }
+        Member member = new Member(this, runnable);
+        synchronized (this) {
+            if (size == members.length) {
+                members = Arrays.copyOf(members, size << 1);
+            }
+            member.index = size;
+            members[size++] = member;
+        }
+        return member;
+    }
+
+    /**
+     * 注销成员，最后一个成员移到空位
+     *
+     * @param member 成员
+     * @return 成功标识
+     */
+    protected synchronized boolean remove(final Member member) {
+        int index = member.index;
+        if (index < 0) {
+            return false;
+        }
+        member.index = -1;
+        Member last = members[--size];
+        members[size] = null;
+        if (last != member) {
+            members[index] = last;
+            last.index = index;
+        }
+        return true;
+    }
+
+    /**
+     * 成员数量
+     *
+     * @return 数量
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getInterval() {
+        return interval;
+    }
+
+    /**
+     * 因为上一周期没有执行完毕而跳过的周期数，加上执行器拒绝而跳过的分块数
+     *
+     * @return 周期数
+     */
+    public long getOverruns() {
+        return overruns.sum();
+    }
+
+    /**
+     * 停止调度，已注册的成员不再执行
+     */
+    public void close() {
+        timeout.cancel();
+        timer.buckets.remove(interval, this);
+    }
+
+    /**
+     * 每个周期执行一次，第一块在当前线程执行，其余的块分发到工作线程
+     */
+    protected void tick() {
+        if (!pending.compareAndSet(0, 1)) {
+            overruns.increment();
+            return;
+        }
+        int count;
+        synchronized (this) {
+            count = size;
+            if (snapshot.length < count) {
+                snapshot = new Member[members.length];
+            }
+            System.arraycopy(members, 0, snapshot, 0, count);
+        }
+        int chunks = count <= chunkSize ? 1 : (count + chunkSize - 1) / chunkSize;
+        // 多出的1在清理快照以后释放，清理完成之前下一周期不会复用快照
+        pending.addAndGet(chunks);
+        if (chunks > 1) {
+            for (int i = 1; i < chunks; i++) {
+                int from = i * chunkSize;
+                int to = Math.min(count, from + chunkSize);
+                try {
+                    executor.execute(() -> run(from, to, count));
+                } catch (RejectedExecutionException e) {
+                    // 不在当前线程执行被拒绝的分块，跳过该分块本周期的执行
+                    overruns.increment();
+                    release(snapshot, count);
+                }
+            }
+        }
+        run(0, Math.min(count, chunkSize), count);
+    }
+
+    /**
+     * 执行快照中的一块，最后完成的块清理快照
+     *
+     * @param from  开始位置
+     * @param to    结束位置
+     * @param count 快照的成员数
+     */
+    protected void run(final int from, final int to, final int count) {
+        Member[] members = snapshot;
+        Member member;
+        try {
+            for (int i = from; i < to; i++) {
+                member = members[i];
+                // 快照之后注销的成员不再执行
+                if (member != null && member.index >= 0) {
+                    try {
+                        member.runnable.run();
+                    } catch (Throwable e) {
+                        log.error("Periodic bucket member execute error! name={}, message={}", name, e.getMessage(), e);
+                    }
+                }
+            }
+        } finally {
+            release(members, count);
+        }
+    }
+
+    /**
+     * 分块执行完毕或者被跳过，最后完成的块清理快照
+     *
+     * @param members 快照
+     * @param count   快照的成员数
+     */
+    protected void release(final Member[] members, final int count) {
+        if (pending.decrementAndGet() == 1) {
+            // 不持有已经注销的成员，清理完成后才允许下一周期复制快照
+            Arrays.fill(members, 0, count, null);
+            pending.set(0);
+        }
+    }
+
+    /**
+     * 成员
+     */
+    protected static class Member implements Timeout {
+        /**
+         * 所属的桶
+         */
+        protected final PeriodicBucket bucket;
+        /**
+         * 任务
+         */
+        protected final Runnable runnable;
+        /**
+         * 在数组中的位置，注销后为-1
+         */
+        protected volatile int index;
+
+        public Member(final PeriodicBucket bucket, final Runnable runnable) {
+            this.bucket = bucket;
+            this.runnable = runnable;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return false;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return index < 0;
+        }
+
+        @Override
+        public boolean cancel() {
+            return bucket.remove(this);
+        }
+
+        @Override
+        public long getRemainingNanos() {
+            return index < 0 ? 0 : bucket.timeout.getRemainingNanos();
+        }
+    }
+}
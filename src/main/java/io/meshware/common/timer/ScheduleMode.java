@@ -0,0 +1,34 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.meshware.common.timer;
+
+/**
+ * 周期调度方式
+ */
+public enum ScheduleMode {
+
+    /**
+     * 固定频率，下一次执行时间按照上一次的计划时间推算，补偿执行耗时和调度延迟，错过的周期直接跳过
+     */
+    FIXED_RATE,
+
+    /**
+     * 固定延迟，下一次执行时间为上一次执行结束后再延迟一个周期
+     */
+    FIXED_DELAY
+
+}
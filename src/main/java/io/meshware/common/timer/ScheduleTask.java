@@ -16,10 +16,12 @@
  */
 package io.meshware.common.timer;
 
+import io.meshware.common.util.Futures;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * ScheduleTask
@@ -51,6 +53,10 @@ public abstract class ScheduleTask implements TimeTask {
     @Override
     public void run() {
         if (running) {
+            if (isNonBlocking()) {
+                runNonBlocking();
+                return;
+            }
             try {
                 CompletableFuture<Void> completableFuture = execute();
                 if (!isAsync() && Objects.nonNull(completableFuture)) {
@@ -59,13 +65,60 @@ public abstract class ScheduleTask implements TimeTask {
             } catch (Exception e) {
                 log.error("Task execute error! message={}", e.getMessage(), e);
             }
-            if (running) {
-                time = TimeUtil.now() + getIntervalInMs();
-                currentTimer.add(this);
+            reschedule();
+        }
+    }
+
+    /**
+     * 非阻塞执行，在Future完成的回调里装载下一次执行，不占用时间轮的工作线程，且不会重叠执行
+     */
+    protected void runNonBlocking() {
+        CompletableFuture<Void> completableFuture;
+        try {
+            completableFuture = execute();
+        } catch (Exception e) {
+            log.error("Task execute error! message={}", e.getMessage(), e);
+            reschedule();
+            return;
+        }
+        if (Objects.isNull(completableFuture)) {
+            reschedule();
+            return;
+        }
+        long timeout = getTimeoutInMs();
+        if (timeout > 0) {
+            // 超时通过时间轮以异常结束Future
+            Futures.timeout(completableFuture, timeout, currentTimer);
+        }
+        completableFuture.whenComplete((v, e) -> {
+            if (e != null) {
+                log.error("Task execute error! message={}", e.getMessage(), e);
             }
+            reschedule();
+        });
+    }
+
+    /**
+     * 装载下一次执行
+     */
+    protected void reschedule() {
+        if (running) {
+            long jitter = getJitterInMs();
+            time = TimeUtil.now() + getIntervalInMs() + (jitter <= 0 ? 0 : ThreadLocalRandom.current().nextLong(jitter + 1));
+            currentTimer.add(this);
         }
     }
 
+    /**
+     * 启动任务，首次执行延迟一个由{@link #getName()}确定的相位，同时启动的相同周期的任务分散在整个周期内，
+     * 不会在同一跳过期
+     */
+    public void start() {
+        running = true;
+        time = TimeUtil.now() + Timer.phase(getName(), getIntervalInMs());
+        currentTimer.add(this);
+    }
+
     public void stop() {
         running = false;
     }
@@ -84,6 +137,15 @@ public abstract class ScheduleTask implements TimeTask {
      */
     public abstract int getIntervalInMs();
 
+    /**
+     * 每个周期附加的随机延迟上限(毫秒)，小于等于0表示不附加
+     *
+     * @return 随机延迟上限
+     */
+    public long getJitterInMs() {
+        return 0;
+    }
+
     /**
      * Async or sync
      *
@@ -92,4 +154,23 @@ public abstract class ScheduleTask implements TimeTask {
     public boolean isAsync() {
         return false;
     }
+
+    /**
+     * 非阻塞模式，在{@link #execute()}返回的Future完成后装载下一次执行，工作线程不会等待，也不会重叠执行，
+     * 优先于{@link #isAsync()}
+     *
+     * @return bool
+     */
+    public boolean isNonBlocking() {
+        return false;
+    }
+
+    /**
+     * 非阻塞模式下每次执行的超时时间(毫秒)，超时后由时间轮以异常结束Future，小于等于0表示不超时
+     *
+     * @return 超时时间
+     */
+    public long getTimeoutInMs() {
+        return 0;
+    }
 }
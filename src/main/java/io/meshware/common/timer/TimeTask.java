@@ -16,6 +16,8 @@
  */
 package io.meshware.common.timer;
 
+import java.util.concurrent.Executor;
+
 /**
  * 任务
  */
@@ -35,4 +37,24 @@ public interface TimeTask extends Runnable {
      */
     long getTime();
 
+    /**
+     * 任务的执行器，为空表示采用定时器默认的执行器。
+     * {@link Timer#INLINE}在调度线程上执行，只适合很轻量的回调
+     *
+     * @return 执行器
+     */
+    default Executor getExecutor() {
+        return null;
+    }
+
+    /**
+     * 任务的执行通道，{@link #getExecutor()}为空时选择定时器对应通道的执行器。
+     * 耗时的任务应该采用{@link Lane#BLOCKING}，避免拖慢超时回调
+     *
+     * @return 执行通道
+     */
+    default Lane getLane() {
+        return Lane.NORMAL;
+    }
+
 }
@@ -33,6 +33,15 @@ public final class TimeUtil {
     // 当前时间
     protected volatile long now;
 
+    // 单调时间的起点，取创建时的墙上时间，便于和墙上时间对照
+    protected long origin;
+
+    // 起点对应的纳秒时间
+    protected long originNanos;
+
+    // 单调时间(毫秒)，不受校时的影响
+    protected volatile long monotonic;
+
     // 调度任务
     protected ScheduledExecutorService scheduler;
 
@@ -47,6 +56,9 @@ public final class TimeUtil {
     public TimeUtil(long precision) {
         this.precision = precision;
         now = System.currentTimeMillis();
+        origin = now;
+        originNanos = System.nanoTime();
+        monotonic = origin;
         scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
             Thread thread = new Thread(runnable, "SystemClock");
             thread.setDaemon(true);
@@ -54,6 +66,7 @@ public final class TimeUtil {
         });
         scheduler.scheduleAtFixedRate(() -> {
             now = System.currentTimeMillis();
+            monotonic = origin + (System.nanoTime() - originNanos) / 1000000L;
         }, precision, precision, TimeUnit.MILLISECONDS);
     }
 
@@ -61,6 +74,10 @@ public final class TimeUtil {
         return now;
     }
 
+    public long getMonotonic() {
+        return monotonic;
+    }
+
     public long precision() {
         return precision;
     }
@@ -74,6 +91,24 @@ public final class TimeUtil {
         return instance.getTime();
     }
 
+    /**
+     * 获取当前单调时钟，只能用于计算时间差
+     *
+     * @return 单调时钟
+     */
+    public static long monotonic() {
+        return instance.getMonotonic();
+    }
+
+    /**
+     * 获取当前单调时钟(微秒)，直接读取System.nanoTime，只能用于计算时间差
+     *
+     * @return 单调时钟
+     */
+    public static long monotonicMicros() {
+        return instance.origin * 1000L + (System.nanoTime() - instance.originNanos) / 1000L;
+    }
+
     public static long microTime() {
         return System.currentTimeMillis() * 1000;
     }
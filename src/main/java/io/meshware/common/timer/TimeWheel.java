@@ -17,11 +17,12 @@
 package io.meshware.common.timer;
 
 
-import java.util.LinkedList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.Queue;
 import java.util.concurrent.DelayQueue;
 import java.util.concurrent.Delayed;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.function.Consumer;
 
 /**
@@ -29,6 +30,9 @@ import java.util.function.Consumer;
  */
 public class TimeWheel {
 
+    protected static final AtomicIntegerFieldUpdater<TimeWheel> SIZE_UPDATER = AtomicIntegerFieldUpdater
+            .newUpdater(TimeWheel.class, "size");
+
     /**
      * 一跳的时间
      */
@@ -55,9 +59,14 @@ public class TimeWheel {
     protected int index;
 
     /**
-     * 延迟队列
+     * 槽队列，非空的槽进入该队列等待过期
      */
-    protected DelayQueue<Slot> queue;
+    protected Queue<Slot> queue;
+
+    /**
+     * 是否由调度线程逐跳扫描，扫描的时间轮不把槽放入队列
+     */
+    protected boolean scanning;
 
     /**
      * 时间槽
@@ -65,9 +74,24 @@ public class TimeWheel {
     protected Slot[] slots;
 
     /**
-     * 下一层时间轮
+     * 下一层时间轮，指标抓取线程也会读取
+     */
+    protected volatile TimeWheel next;
+
+    /**
+     * 当前时间轮上的任务数量，不包括下层时间轮
+     */
+    protected volatile int size;
+
+    /**
+     * 时钟
      */
-    protected TimeWheel next;
+    protected Clock clock;
+
+    /**
+     * 上层时间轮的跳数，依次对应更上面的每一层，为空表示与当前层相同
+     */
+    protected int[] uppers;
 
     /**
      * 时间轮
@@ -78,6 +102,36 @@ public class TimeWheel {
      * @param queue    延迟队列
      */
     public TimeWheel(final long tickTime, final int ticks, final long now, final DelayQueue<Slot> queue) {
+        this(tickTime, ticks, now, queue, false);
+    }
+
+    /**
+     * 时间轮
+     *
+     * @param tickTime 每跳的实际
+     * @param ticks    几跳
+     * @param now      当前时间
+     * @param queue    槽队列，下层时间轮共享该队列
+     * @param scanning 当前时间轮是否由调度线程逐跳扫描
+     */
+    public TimeWheel(final long tickTime, final int ticks, final long now, final Queue<Slot> queue,
+                     final boolean scanning) {
+        this(tickTime, ticks, now, queue, scanning, Clock.SYSTEM);
+    }
+
+    /**
+     * 时间轮
+     *
+     * @param tickTime 每跳的实际
+     * @param ticks    几跳
+     * @param now      当前时间，采用时钟的时间
+     * @param queue    槽队列，下层时间轮共享该队列
+     * @param scanning 当前时间轮是否由调度线程逐跳扫描
+     * @param clock    时钟
+     */
+    public TimeWheel(final long tickTime, final int ticks, final long now, final Queue<Slot> queue,
+                     final boolean scanning, final Clock clock) {
+        this.clock = clock == null ? Clock.SYSTEM : clock;
         this.tickTime = tickTime;
         this.ticks = ticks;
         this.duration = ticks * tickTime;
@@ -85,11 +139,28 @@ public class TimeWheel {
         // 当前时间为一跳的整数倍
         this.now = now - (now % tickTime);
         this.queue = queue;
+        this.scanning = scanning;
         for (int i = 0; i < ticks; i++) {
-            slots[i] = new Slot();
+            slots[i] = new Slot(this);
         }
     }
 
+    /**
+     * 时间轮，每一层的跳数可以不同
+     *
+     * @param tickTime 每跳的时间
+     * @param layout   从底层开始每一层的跳数，最后一个元素用于更上层的时间轮
+     * @param now      当前时间，采用时钟的时间
+     * @param queue    槽队列，下层时间轮共享该队列
+     * @param scanning 当前时间轮是否由调度线程逐跳扫描
+     * @param clock    时钟
+     */
+    public TimeWheel(final long tickTime, final int[] layout, final long now, final Queue<Slot> queue,
+                     final boolean scanning, final Clock clock) {
+        this(tickTime, layout[0], now, queue, scanning, clock);
+        this.uppers = layout.length > 1 ? Arrays.copyOfRange(layout, 1, layout.length) : null;
+    }
+
     public long getDuration() {
         return duration;
     }
@@ -101,7 +172,8 @@ public class TimeWheel {
      */
     protected TimeWheel getNext() {
         if (next == null) {
-            next = new TimeWheel(duration, ticks, now, queue);
+            next = uppers == null ? new TimeWheel(duration, ticks, now, queue, false, clock)
+                    : new TimeWheel(duration, uppers, now, queue, false, clock);
         }
         return next;
     }
@@ -113,7 +185,7 @@ public class TimeWheel {
      * @return 时间点
      */
     public long getLeastOneTick(final long time) {
-        long result = TimeUtil.now() + tickTime;
+        long result = clock.now() + tickTime;
         return Math.max(time, result);
     }
 
@@ -133,7 +205,7 @@ public class TimeWheel {
             int count = (int) (time / tickTime);
             Slot slot = slots[(count + index) % ticks];
             // 添加到槽里面
-            if (slot.add(task, now + count * tickTime) == Slot.HEAD) {
+            if (slot.add(task, now + count * tickTime) == Slot.HEAD && !scanning) {
                 queue.offer(slot);
             }
             return true;
@@ -143,6 +215,51 @@ public class TimeWheel {
         }
     }
 
+    /**
+     * 当前位置的槽
+     *
+     * @return 槽
+     */
+    protected Slot current() {
+        return slots[index];
+    }
+
+    /**
+     * 获取当前时间轮上最早的非空槽的过期时间，从当前位置向后查找
+     *
+     * @return 过期时间，没有任务返回Long.MAX_VALUE
+     */
+    protected long getExpiration() {
+        if (size > 0) {
+            Slot slot;
+            for (int i = 1; i <= ticks; i++) {
+                slot = slots[(index + i) % ticks];
+                if (slot.expiration != -1L) {
+                    return slot.expiration;
+                }
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * 查找过期时间最远的可放弃任务，优先从上层时间轮查找，从当前位置向前逆序查找非空的槽
+     *
+     * @param victim 记录找到的任务
+     * @return 找到返回true
+     */
+    protected boolean getFurthest(final Timer.Victim victim) {
+        TimeWheel upper = next;
+        boolean result = upper != null && upper.getFurthest(victim);
+        if (!result && size > 0) {
+            int current = index;
+            for (int i = ticks - 1; i > 0 && !result; i--) {
+                result = slots[(current + i) % ticks].getFurthest(victim);
+            }
+        }
+        return result;
+    }
+
     /**
      * 推进时间
      *
@@ -176,16 +293,27 @@ public class TimeWheel {
         protected long expiration = -1L;
 
         /**
-         * 根节点
+         * 所属时间轮
+         */
+        protected TimeWheel wheel;
+
+        /**
+         * 头节点
          */
-        protected Timer.Task root = new Timer.Task("root", -1L, null, null, null);
+        protected Timer.Task head;
+
+        /**
+         * 尾节点
+         */
+        protected Timer.Task tail;
 
         /**
          * 构造函数
+         *
+         * @param wheel 所属时间轮
          */
-        public Slot() {
-            root.pre = root;
-            root.next = root;
+        public Slot(final TimeWheel wheel) {
+            this.wheel = wheel;
         }
 
         /**
@@ -197,11 +325,15 @@ public class TimeWheel {
          */
         protected synchronized int add(final Timer.Task task, final long expire) {
             task.slot = this;
-            Timer.Task tail = root.pre;
-            task.next = root;
+            task.next = null;
             task.pre = tail;
-            tail.next = task;
-            root.pre = task;
+            if (tail == null) {
+                head = task;
+            } else {
+                tail.next = task;
+            }
+            tail = task;
+            SIZE_UPDATER.incrementAndGet(wheel);
             if (expiration == -1L) {
                 expiration = expire;
                 return HEAD;
@@ -213,49 +345,83 @@ public class TimeWheel {
          * 移除任务
          *
          * @param task task
+         * @return 成功标识，任务已经不在当前槽中返回false
          */
-        protected synchronized void remove(final Timer.Task task) {
-            if (task.next == null || task.pre == null) {
-                return;
+        protected synchronized boolean remove(final Timer.Task task) {
+            if (task.slot != this) {
+                return false;
+            }
+            if (task.pre == null) {
+                head = task.next;
+            } else {
+                task.pre.next = task.next;
+            }
+            if (task.next == null) {
+                tail = task.pre;
+            } else {
+                task.next.pre = task.pre;
             }
-            task.next.pre = task.pre;
-            task.pre.next = task.next;
             task.slot = null;
             task.next = null;
             task.pre = null;
+            SIZE_UPDATER.decrementAndGet(wheel);
+            return true;
         }
 
         /**
-         * 当前槽已经过期，执行任务
+         * 当前槽已经过期，在原链表上逐个摘除任务并交给消费者，不分配额外的集合
          *
          * @param consumer 消费者
          */
         protected synchronized void flush(final Consumer<Timer.Task> consumer) {
-            List<Timer.Task> ts = new LinkedList<>();
-            Timer.Task task = root.next;
-            while (task != root) {
-                Timer.Task next = task.next;
+            Timer.Task task = head;
+            head = null;
+            tail = null;
+            expiration = -1L;
+            Timer.Task next;
+            while (task != null) {
+                SIZE_UPDATER.decrementAndGet(wheel);
+                next = task.next;
                 task.next = null;
                 task.pre = null;
                 task.slot = null;
-                ts.add(task);
+                // 消费者可能把任务级联到其它槽或者回收复用，需要提前保存下一个节点
+                consumer.accept(task);
                 task = next;
             }
-            root.next = root;
-            root.pre = root;
-            expiration = -1L;
-            ts.forEach(consumer);
+        }
+
+        /**
+         * 从尾部开始查找可放弃的任务，跳过周期任务
+         *
+         * @param victim 记录找到的任务
+         * @return 找到返回true
+         */
+        protected synchronized boolean getFurthest(final Timer.Victim victim) {
+            Timer.Task task = tail;
+            for (int i = 0; i < 16 && task != null; i++) {
+                if (!(task instanceof Timer.PeriodicTask)) {
+                    // 任务还在槽里，在锁内记录的代数就是当前的代数
+                    victim.offer(task);
+                    return true;
+                }
+                task = task.pre;
+            }
+            return false;
         }
 
         @Override
         public long getDelay(final TimeUnit unit) {
-            long delayMs = expiration - TimeUtil.now();
-            return Math.max(0, unit.convert(delayMs, TimeUnit.MILLISECONDS));
+            // 过期时间的单位与时钟一致
+            Clock clock = wheel.clock;
+            return Math.max(0, unit.convert(expiration - clock.now(), clock.getUnit()));
         }
 
         @Override
         public int compareTo(final Delayed o) {
-            return Long.compare(this.getDelay(TimeUnit.MILLISECONDS), o.getDelay(TimeUnit.MILLISECONDS));
+            // 同一时钟下比较过期时间即可，避免每次比较都获取当前时间
+            return o instanceof Slot ? Long.compare(expiration, ((Slot) o).expiration)
+                    : Long.compare(getDelay(TimeUnit.NANOSECONDS), o.getDelay(TimeUnit.NANOSECONDS));
         }
 
     }
@@ -42,4 +42,13 @@ public interface Timeout {
      */
     boolean cancel();
 
+    /**
+     * 距离过期还剩余的纳秒数，精度取决于定时器的时钟
+     *
+     * @return 剩余纳秒数，已经过期或者放弃返回0
+     */
+    default long getRemainingNanos() {
+        return 0;
+    }
+
 }
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.meshware.common.timer;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * 超时分组，例如一个连接上的所有请求超时。<br>
+ * 分组内的任务记录加入时的纪元，{@link #cancel()}只递增纪元，时间复杂度为O(1)，
+ * 已经加入的任务在过期时发现纪元不一致则直接丢弃，内存和待处理计数在那时才回收。
+ */
+public class TimeoutGroup {
+
+    protected static final AtomicIntegerFieldUpdater<TimeoutGroup> EPOCH_UPDATER = AtomicIntegerFieldUpdater
+            .newUpdater(TimeoutGroup.class, "epoch");
+
+    /**
+     * 时间轮
+     */
+    protected final Timer timer;
+
+    /**
+     * 纪元
+     */
+    protected volatile int epoch;
+
+    /**
+     * 构造函数
+     *
+     * @param timer 时间轮
+     */
+    public TimeoutGroup(final Timer timer) {
+        if (timer == null) {
+            throw new IllegalArgumentException("timer can not be null");
+        }
+        this.timer = timer;
+    }
+
+    /**
+     * 添加任务，至少需要一跳
+     *
+     * @param name     名称
+     * @param time     任务执行绝对时间
+     * @param runnable 执行任务
+     * @return 超时对象
+     */
+    public Timeout add(final String name, final long time, final Runnable runnable) {
+        return runnable == null ? null : timer.add(name, timer.getLeastOneTick(timer.clock.toClockTime(time)), runnable, this);
+    }
+
+    /**
+     * 添加延迟执行的任务，至少需要一跳
+     *
+     * @param name     名称
+     * @param delay    延迟任务执行时间(毫秒)
+     * @param runnable 执行任务
+     * @return 超时对象
+     */
+    public Timeout delay(final String name, final long delay, final Runnable runnable) {
+        return runnable == null ? null : timer.add(name, timer.getLeastOneTick(timer.clock.now() + timer.toClockDuration(delay)), runnable, this);
+    }
+
+    /**
+     * 放弃分组内已经添加的所有任务，之后添加的任务不受影响
+     */
+    public void cancel() {
+        EPOCH_UPDATER.incrementAndGet(this);
+    }
+
+}
@@ -20,57 +20,92 @@ import io.meshware.common.concurrent.NamedThreadFactory;
 import io.meshware.common.util.Shutdown;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.Queue;
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Consumer;
 
 /**
- * 时间轮调度器
+ * 时间轮调度器，支持多个分片，每个分片拥有独立的时间轮和调度线程
  */
 @Slf4j
 public class Timer {
 
+    /**
+     * 默认定时器分片数量的系统属性，取值为正整数或者auto(按照CPU核数)
+     */
+    public static final String TIMER_SHARDS = "meshware.timer.shards";
+
+    /**
+     * 默认定时器是否按照截止时间的分布自适应调整时间轮布局的系统属性，取值true或者false，默认为false
+     */
+    public static final String TIMER_ADAPTIVE = "meshware.timer.adaptive";
+
+    /**
+     * 在调度线程上直接执行过期任务，省去线程切换，只适用于非常轻量的回调，例如以异常结束Future
+     */
+    public static final Executor INLINE = Runnable::run;
+
     /**
      * 默认定时器
      */
     protected static volatile Timer timer;
 
     /**
-     * 延迟队列
+     * 按照名称记录降级通道的最大数量，避免动态的任务名称无限增长
      */
-    protected DelayQueue<TimeWheel.Slot> queue;
+    protected static final int MAX_DEMOTIONS = 1024;
 
     /**
-     * 底层时间轮
+     * 自适应布局的评估周期(毫秒)
      */
-    protected TimeWheel timeWheel;
+    protected static final long ADAPT_INTERVAL = 1000;
 
     /**
-     * 过期任务执行线程
+     * 过载等待时检查容量的间隔(纳秒)
      */
-    protected ExecutorService workerPool;
+    protected static final long BLOCK_INTERVAL = 100000L;
+
+    protected static final AtomicIntegerFieldUpdater<Shard> SLEEPING_UPDATER = AtomicIntegerFieldUpdater
+            .newUpdater(Shard.class, "sleeping");
 
     /**
-     * 轮询延迟队列获取过期任务线程
+     * 每一跳时间，单位与时钟一致
      */
-    protected ExecutorService bossPool;
+    protected long tickTime;
+
+    /**
+     * 时间轮分片
+     */
+    protected Shard[] shards;
+
+    /**
+     * 过期任务执行线程，指定了执行器时为空
+     */
+    protected ExecutorService workerPool;
 
     /**
-     * 放弃的任务
+     * 过期任务默认的执行器
      */
-    protected Queue<Task> cancels = new ConcurrentLinkedQueue<>();
+    protected Executor executor;
 
     /**
-     * 待分配的任务，防止并发
+     * 轮询延迟队列获取过期任务线程，每个分片一个线程
      */
-    protected Queue<Task> flying = new ConcurrentLinkedQueue<>();
+    protected ExecutorService bossPool;
 
     /**
-     * 待处理的任务计数
+     * 待处理的任务计数，采用分段计数器，降低多核下的竞争
      */
-    protected AtomicLong tasks = new AtomicLong(0);
+    protected LongAdder tasks = new LongAdder();
 
     /**
      * 最大待处理任务
@@ -78,19 +113,114 @@ public class Timer {
     protected long maxTasks;
 
     /**
-     * 任务执行完毕的消费者
+     * 可回收任务池
+     */
+    protected TaskPool pool = new TaskPool();
+
+    /**
+     * 驱动方式
+     */
+    protected Driver driver;
+
+    /**
+     * 时钟，任务的过期时间都采用该时钟的时间
+     */
+    protected Clock clock;
+
+    /**
+     * 时钟的时间单位
+     */
+    protected TimeUnit unit;
+
+    /**
+     * 调度线程在到期前自旋等待的时间，单位与时钟一致，用于弥补park的唤醒延迟
+     */
+    protected long spinTime;
+
+    /**
+     * 运行指标
+     */
+    protected TimerMetrics metrics;
+
+    /**
+     * 所属的定时器分组，分组驱动时没有独立的调度线程
+     */
+    protected TimerGroup group;
+
+    /**
+     * 已经从定时器分组移除，不再接受新任务
+     */
+    protected volatile boolean removed;
+
+    /**
+     * 各执行通道的执行器，按照通道的序号索引，没有配置的通道采用默认的执行器
+     */
+    protected Executor[] lanes;
+
+    /**
+     * 任务执行耗时超过该值则降级到更慢的通道，单位与时钟一致，0表示不降级
+     */
+    protected long demoteTime;
+
+    /**
+     * 按照任务名称记录的降级通道，同名的后续任务直接进入降级后的通道
+     */
+    protected Map<String, Lane> demotions = new ConcurrentHashMap<>();
+
+    /**
+     * 按照周期共享的合并周期桶
+     */
+    protected Map<Long, PeriodicBucket> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * 长时间执行的任务的看门狗
+     */
+    protected Watchdog watchdog;
+
+    /**
+     * 过载策略
+     */
+    protected OverloadPolicy overloadPolicy;
+
+    /**
+     * 过载时调用方最多等待的时间(纳秒)
+     */
+    protected long blockNanos;
+
+    /**
+     * 削减任务的水位，待处理的任务达到该值后名称匹配前缀的任务直接放弃，0表示不削减
+     */
+    protected long shedTasks;
+
+    /**
+     * 削减的任务名称前缀
+     */
+    protected String[] shedPrefixes;
+
+    /**
+     * 持久化日志，为空表示不持久化
+     */
+    protected TimerJournal journal;
+
+    /**
+     * 周期任务按照名称错开首次执行的相位
+     */
+    protected boolean spread;
+
+    /**
+     * 周期任务每次装载增加的随机延迟上限，单位与时钟一致
      */
-    protected Consumer<Task> afterRun;
+    protected long jitter;
 
     /**
-     * 放弃的消费者
+     * 每个分片每一跳最多派发的过期任务数，超出的任务顺延到后续的跳，0表示不限制
      */
-    protected Consumer<Task> afterCancel;
+    protected int releaseRate;
 
     /**
-     * 任务执行之前的消费者
+     * 自适应的时间轮布局，为空表示固定布局
      */
-    protected Consumer<Task> beforeRun;
+    protected AdaptiveLayout adaptive;
 
     /**
      * 构造函数
@@ -126,55 +256,188 @@ public class Timer {
      */
     public Timer(final String name, final long tickTime, final int ticks, final int workerThreads,
                  final long maxTasks) {
-        if (tickTime <= 0) {
+        this(name, tickTime, ticks, workerThreads, maxTasks, 1);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param name          名称
+     * @param tickTime      每一跳时间
+     * @param ticks         时间轮有几条
+     * @param workerThreads 工作线程数
+     * @param maxTasks      最大待处理任务，分片共享
+     * @param shards        分片数量，每个分片拥有独立的时间轮和调度线程
+     */
+    public Timer(final String name, final long tickTime, final int ticks, final int workerThreads,
+                 final long maxTasks, final int shards) {
+        this(builder().name(name).tickTime(tickTime).ticks(ticks).workerThreads(workerThreads)
+                .maxTasks(maxTasks).shards(shards));
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param builder 构建器
+     */
+    protected Timer(final Builder builder) {
+        if (builder.tickTime <= 0) {
             throw new IllegalArgumentException("tickTime must be greater than 0");
-        } else if (ticks <= 0) {
+        } else if (builder.ticks <= 0) {
             throw new IllegalArgumentException("ticks must be greater than 0");
-        } else if (workerThreads <= 0) {
+        } else if (builder.workerThreads <= 0) {
             throw new IllegalArgumentException("workerThreads must be greater than 0");
+        } else if (builder.shards <= 0) {
+            throw new IllegalArgumentException("shards must be greater than 0");
+        } else if (builder.shedPrefixes != null && builder.shedPrefixes.length > 0 && builder.maxTasks <= 0) {
+            throw new IllegalArgumentException("shed requires maxTasks");
+        } else if (builder.shedWatermark <= 0 || builder.shedWatermark > 1) {
+            throw new IllegalArgumentException("shed watermark must be in (0, 1]");
+        } else if (builder.group != null) {
+            checkGroup(builder);
         }
-        this.maxTasks = maxTasks;
-        this.afterRun = o -> tasks.decrementAndGet();
-        this.afterCancel = this::cancel;
-        this.beforeRun = this::supply;
-        this.queue = new DelayQueue<>();
-        this.timeWheel = new TimeWheel(tickTime, ticks, TimeUtil.now(), queue);
-        String prefix = name == null || name.isEmpty() ? "timer" : name;
-        this.workerPool = Executors.newFixedThreadPool(workerThreads, new NamedThreadFactory(prefix + "-worker", true));
-        this.bossPool = Executors.newFixedThreadPool(1, new NamedThreadFactory(prefix + "-boss", true));
-        this.bossPool.submit(() -> {
-            while (!Shutdown.isShutdown()) {
-                try {
-                    // 拉取一跳时间
-                    TimeWheel.Slot slot = queue.poll(timeWheel.tickTime, TimeUnit.MILLISECONDS);
-                    if (!Shutdown.isShutdown()) {
-                        // 处理放弃的任务
-                        cancel();
-                        // 添加新增的任务，如果当前任务已经过期则立刻执行，否则放入后续的槽中
-                        supply();
-                        if (slot != null) {
-                            // 推进一跳
-                            timeWheel.advance(slot.expiration);
-                            // 执行任务
-                            slot.flush(beforeRun);
-                        } else {
-                            // 推进一跳
-                            timeWheel.advance(timeWheel.now + timeWheel.tickTime);
-                        }
-                    }
-                } catch (InterruptedException e) {
-                    log.error(e.getMessage(), e);
-                    Thread.currentThread().interrupt();
-                    break;
-                } catch (Exception e) {
-                    log.error(e.getMessage(), e);
+        this.group = builder.group;
+        this.maxTasks = builder.maxTasks;
+        int ticks = builder.ticks;
+        int size = builder.shards;
+        if (group != null) {
+            // 分组内的定时器共享时间轮参数、时钟、调度线程和工作线程
+            this.tickTime = group.tickTime;
+            this.driver = Driver.BUCKET;
+            this.clock = group.clock;
+            ticks = group.ticks;
+            size = 1;
+        } else {
+            this.tickTime = builder.tickTime;
+            this.driver = builder.driver == null ? Driver.DELAY_QUEUE : builder.driver;
+            this.clock = builder.clock == null ? Clock.MONOTONIC : builder.clock;
+        }
+        this.unit = clock.getUnit();
+        this.spinTime = Math.max(builder.spinTime, 0);
+        this.metrics = new TimerMetrics(this);
+        this.overloadPolicy = builder.overloadPolicy == null ? OverloadPolicy.ABORT : builder.overloadPolicy;
+        this.blockNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(builder.blockTime, 0));
+        this.shedPrefixes = builder.shedPrefixes == null ? new String[0] : builder.shedPrefixes;
+        this.shedTasks = shedPrefixes.length == 0 ? 0 : Math.max((long) (maxTasks * builder.shedWatermark), 1);
+        this.spread = builder.spread;
+        this.jitter = builder.jitter <= 0 ? 0 : toClockDuration(builder.jitter);
+        this.releaseRate = Math.max(builder.releaseRate, 0);
+        if (builder.adaptive) {
+            this.adaptive = new AdaptiveLayout(tickTime, ticks, Math.max(toClockDuration(ADAPT_INTERVAL), 1), clock.now());
+        }
+        String prefix = builder.name == null || builder.name.isEmpty() ? "timer" : builder.name;
+        if (builder.executor != null) {
+            this.executor = builder.executor;
+        } else if (group != null) {
+            this.executor = group.executor;
+        } else if (builder.workerQueue > 0) {
+            // 队列满了直接拒绝，和执行通道一样处理，不能由调度线程执行
+            this.workerPool = new ThreadPoolExecutor(builder.workerThreads, builder.workerThreads, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(builder.workerQueue), new NamedThreadFactory(prefix + "-worker", true),
+                    new ThreadPoolExecutor.AbortPolicy());
+            this.executor = workerPool;
+        } else {
+            this.workerPool = Executors.newFixedThreadPool(builder.workerThreads, new NamedThreadFactory(prefix + "-worker", true));
+            this.executor = workerPool;
+        }
+        this.lanes = new Executor[Lane.values().length];
+        for (Lane lane : Lane.values()) {
+            int index = lane.ordinal();
+            if (builder.laneExecutors[index] != null) {
+                lanes[index] = builder.laneExecutors[index];
+            } else if (builder.laneThreads[index] > 0) {
+                // 队列满了直接拒绝，不能由调度线程执行
+                int queueSize = builder.laneQueues[index];
+                if (queueSize < 0) {
+                    throw new IllegalArgumentException("queue size of lane " + lane + " can not be negative");
                 }
+                // 队列大小为0时直接交给空闲线程
+                lanes[index] = new ThreadPoolExecutor(builder.laneThreads[index], builder.laneThreads[index],
+                        0L, TimeUnit.MILLISECONDS, queueSize == 0 ? new SynchronousQueue<>() : new LinkedBlockingQueue<>(queueSize),
+                        new NamedThreadFactory(prefix + "-" + lane.name().toLowerCase(), true),
+                        new ThreadPoolExecutor.AbortPolicy());
+            } else {
+                lanes[index] = executor;
+            }
+        }
+        this.demoteTime = builder.demoteTime <= 0 ? 0 : Math.max(toClockDuration(builder.demoteTime), 1);
+        if (builder.watchdogTime > 0) {
+            this.watchdog = new Watchdog(Math.max(toClockDuration(builder.watchdogTime), 1));
+            Thread thread = new NamedThreadFactory(prefix + "-watchdog", true).newThread(watchdog);
+            thread.start();
+        }
+        this.shards = new Shard[size];
+        for (int i = 0; i < size; i++) {
+            this.shards[i] = new Shard(tickTime, ticks);
+        }
+        if (group != null) {
+            group.add(this);
+        } else if (driver != Driver.MANUAL) {
+            // 手动驱动没有调度线程
+            this.bossPool = Executors.newFixedThreadPool(builder.shards, new NamedThreadFactory(prefix + "-boss", true));
+            for (Shard shard : shards) {
+                this.bossPool.submit(shard::run);
             }
-        });
+        }
+        if (builder.journal != null) {
+            this.journal = builder.journal;
+            recover();
+        }
+    }
+
+    /**
+     * 从持久化日志恢复任务，过期时间已经过去的任务在下一跳执行
+     */
+    protected void recover() {
+        int count = 0;
+        for (TimerJournal.Entry entry : journal.recover()) {
+            TimeTask task = entry.task;
+            Shard shard = shard();
+            JournalTask t = new JournalTask(task.getName(), getLeastOneTick(clock.toClockTime(entry.time)), task,
+                    shard, journal, entry.id);
+            t.executor = task.getExecutor();
+            t.lane = task.getLane() == null ? Lane.NORMAL : task.getLane();
+            journal(t, shard);
+            count++;
+        }
+        if (count > 0) {
+            log.info("Timer recovered {} tasks from journal", count);
+        }
+    }
+
+    /**
+     * 校验加入分组的配置，分组内的定时器采用分组的时间轮参数、时钟和驱动方式，显式指定的不同配置不能静默覆盖
+     *
+     * @param builder 构建器
+     */
+    protected static void checkGroup(final Builder builder) {
+        TimerGroup group = builder.group;
+        if (builder.shards != 1) {
+            throw new IllegalArgumentException("shards must be 1 when joining a timer group");
+        } else if (builder.tickTimeSet && builder.tickTime != group.tickTime) {
+            throw new IllegalArgumentException("tickTime " + builder.tickTime + " conflicts with the tickTime "
+                    + group.tickTime + " of timer group " + group.name);
+        } else if (builder.ticksSet && builder.ticks != group.ticks) {
+            throw new IllegalArgumentException("ticks " + builder.ticks + " conflicts with the ticks "
+                    + group.ticks + " of timer group " + group.name);
+        } else if (builder.clockSet && (builder.clock == null ? Clock.MONOTONIC : builder.clock) != group.clock) {
+            throw new IllegalArgumentException("clock conflicts with the clock of timer group " + group.name);
+        } else if (builder.driver == Driver.MANUAL) {
+            throw new IllegalArgumentException("manual driver can not join a timer group");
+        }
+    }
+
+    /**
+     * 构建构造器
+     *
+     * @return builder
+     */
+    public static Builder builder() {
+        return new Builder();
     }
 
     /**
-     * 获取默认的定时器
+     * 获取默认的定时器，分片数量由系统属性{@link #TIMER_SHARDS}决定，默认为1
      *
      * @return 定时器
      */
@@ -184,8 +447,11 @@ public class Timer {
                 if (timer == null) {
                     // Parametric parametric = new
                     // MapParametric<>(GlobalContext.getContext());
-                    timer = new Timer("default-timer", 1, 512,
-                            Math.min(Runtime.getRuntime().availableProcessors() * 2 + 2, 10));
+                    int cpus = Runtime.getRuntime().availableProcessors();
+                    timer = builder().name("default-timer").tickTime(1).ticks(512)
+                            .workerThreads(Math.min(cpus * 2 + 2, 10))
+                            .shards(getShards(System.getProperty(TIMER_SHARDS), cpus))
+                            .adaptive(Boolean.getBoolean(TIMER_ADAPTIVE)).build();
                 }
             }
         }
@@ -193,44 +459,66 @@ public class Timer {
     }
 
     /**
-     * 放弃任务
+     * 解析分片数量
+     *
+     * @param value 配置值
+     * @param cpus  CPU核数
+     * @return 分片数量
      */
-    protected void cancel() {
-        Task task;
-        // 移除放弃的任务
-        while ((task = cancels.poll()) != null) {
-            // 放弃任务，进入队列之前已经修改了计数器，这里不需要再处理。
-            task.remove();
+    protected static int getShards(final String value, final int cpus) {
+        if (value == null || value.isEmpty()) {
+            return 1;
+        } else if ("auto".equalsIgnoreCase(value)) {
+            return cpus;
+        }
+        try {
+            int result = Integer.parseInt(value.trim());
+            return result <= 0 ? cpus : result;
+        } catch (NumberFormatException e) {
+            log.warn("invalid {} value {}, use 1 shard", TIMER_SHARDS, value);
+            return 1;
         }
     }
 
     /**
-     * 添加任务
+     * 选择当前线程的分片，按照线程进行哈希，同一线程的任务落到同一个分片
+     *
+     * @return 分片
      */
-    protected void supply() {
-        Task task;
-        // 添加任务，1跳最多10万次
-        for (int i = 0; i < 100000; i++) {
-            task = flying.poll();
-            if (task == null) {
-                break;
-            }
-            if (!task.isCancelled()) {
-                supply(task);
-            }
-        }
+    protected Shard shard() {
+        int size = shards.length;
+        return size == 1 ? shards[0] : shards[(int) (Thread.currentThread().getId() % size)];
     }
 
     /**
-     * 添加任务
+     * 获取至少一跳的时间
      *
-     * @param task 任务
+     * @param time 时间
+     * @return 时间点
      */
-    protected void supply(final Task task) {
-        // 添加失败任务直接执行
-        if (!timeWheel.add(task)) {
-            workerPool.submit(task);
-        }
+    protected long getLeastOneTick(final long time) {
+        return align(Math.max(time, clock.now() + tickTime));
+    }
+
+    /**
+     * 时间向上对齐到一跳的整数倍，对齐后的任务正好落在过期时间相同的槽里，不会提前执行
+     *
+     * @param time 时间
+     * @return 对齐的时间
+     */
+    protected long align(final long time) {
+        long remain = time % tickTime;
+        return remain == 0 ? time : time - remain + tickTime;
+    }
+
+    /**
+     * 把毫秒转换成时钟的时间单位
+     *
+     * @param millis 毫秒
+     * @return 时钟时间
+     */
+    protected long toClockDuration(final long millis) {
+        return unit.convert(millis, TimeUnit.MILLISECONDS);
     }
 
     /**
@@ -242,8 +530,7 @@ public class Timer {
      * @return 超时对象
      */
     public Timeout add(final String name, final long time, final Runnable runnable) {
-        return runnable == null ? null
-                : add(new Task(name, timeWheel.getLeastOneTick(time), runnable, afterRun, afterCancel));
+        return runnable == null ? null : add(name, getLeastOneTick(clock.toClockTime(time)), runnable, shard());
     }
 
     /**
@@ -258,8 +545,33 @@ public class Timer {
         if (runnable == null) {
             return null;
         }
-        long time = timeWheel.getLeastOneTick(delay + TimeUtil.now());
-        return add(new Task(name, time, runnable, afterRun, afterCancel));
+        return add(name, getLeastOneTick(toClockDuration(delay) + clock.now()), runnable, shard());
+    }
+
+    /**
+     * 添加指定时间单位的延迟执行任务，至少需要一跳，配合{@link Builder#highResolution(long)}可以指定亚毫秒的延迟
+     *
+     * @param name     名称
+     * @param delay    延迟任务执行时间
+     * @param timeUnit 时间单位
+     * @param runnable 执行任务
+     * @return 超时对象
+     */
+    public Timeout delay(final String name, final long delay, final TimeUnit timeUnit, final Runnable runnable) {
+        if (runnable == null) {
+            return null;
+        }
+        return add(name, getLeastOneTick(unit.convert(delay, timeUnit) + clock.now()), runnable, shard());
+    }
+
+    /**
+     * 时钟时间换算为墙上时间，两者的差值为toClockTime(0)
+     *
+     * @param time 时钟时间
+     * @return 墙上时间(毫秒)
+     */
+    protected long toWallTime(final long time) {
+        return unit.toMillis(time - clock.toClockTime(0));
     }
 
     /**
@@ -272,172 +584,2409 @@ public class Timer {
         if (task == null) {
             return null;
         }
-        long time = timeWheel.getLeastOneTick(task instanceof DelayTask ? TimeUtil.now() + task.getTime() : task.getTime());
-        return add(new Task(task.getName(), time, task, afterRun, afterCancel));
+        long time = getLeastOneTick(task instanceof DelayTask
+                ? clock.now() + toClockDuration(task.getTime()) : clock.toClockTime(task.getTime()));
+        Shard shard = shard();
+        Task t;
+        if (journal != null && task instanceof Serializable) {
+            long wallTime = task instanceof DelayTask ? TimeUtil.now() + task.getTime() : task.getTime();
+            t = new JournalTask(task.getName(), time, task, shard, journal, journal.schedule(task, wallTime));
+        } else {
+            t = new Task(task.getName(), time, task, shard);
+        }
+        t.executor = task.getExecutor();
+        t.lane = task.getLane() == null ? Lane.NORMAL : task.getLane();
+        return t instanceof JournalTask ? journal((JournalTask) t, shard) : add(t, shard);
     }
 
     /**
-     * 添加任务
+     * 添加已经写入日志的任务，没有加入时间轮则追加放弃记录
      *
-     * @param task 任务
+     * @param task  任务
+     * @param shard 分片
      * @return 超时对象
      */
-    protected Timeout add(final Task task) {
-        if (maxTasks > 0 && tasks.incrementAndGet() > maxTasks) {
-            tasks.decrementAndGet();
-            throw new RejectedExecutionException("the maximum of pending tasks is " + maxTasks);
+    protected Timeout journal(final JournalTask task, final Shard shard) {
+        Timeout result;
+        try {
+            result = add(task, shard);
+        } catch (RuntimeException e) {
+            journal.cancel(task.journalId);
+            throw e;
         }
-        flying.add(task);
-        return task;
+        if (result.isCancelled()) {
+            journal.cancel(task.journalId);
+        }
+        return result;
     }
 
     /**
-     * 放弃任务
+     * 添加可回收的延迟任务，至少需要一跳。<br>
+     * 任务对象在执行或放弃后会被回收复用，因此不返回任务对象，而是返回带代数的句柄，通过{@link #cancel(long)}放弃任务。
+     * 句柄在任务回收后自动失效，迟到的放弃不会影响复用后的任务。稳定运行后调度、级联和过期过程不再分配对象；
+     * 但默认的工作线程池基于{@link LinkedBlockingQueue}，每次派发过期任务仍然分配一个队列节点，
+     * 需要整条路径都不分配对象时应指定{@link #INLINE}或者不分配对象的执行器。
      *
-     * @param task 任务
+     * @param name     名称
+     * @param delay    延迟任务执行时间
+     * @param runnable 执行任务
+     * @return 任务句柄，执行任务为空返回0
      */
-    protected void cancel(final Task task) {
-        tasks.decrementAndGet();
-        cancels.add(task);
+    public long schedule(final String name, final long delay, final Runnable runnable) {
+        if (runnable == null) {
+            return 0;
+        }
+        Shard shard = shard();
+        Task task = pool.acquire();
+        task.name = name;
+        task.time = getLeastOneTick(toClockDuration(delay) + clock.now());
+        task.runnable = runnable;
+        task.shard = shard;
+        // 先获取句柄，入队后任务可能随时执行完毕并被回收
+        long handle = task.getHandle();
+        try {
+            add(task, shard);
+        } catch (RuntimeException e) {
+            pool.release(task);
+            throw e;
+        }
+        return handle;
     }
 
     /**
-     * 任务
+     * 通过句柄放弃可回收的任务
+     *
+     * @param handle 任务句柄
+     * @return 成功标识，任务已经执行、已经放弃或者句柄失效返回false
      */
-    protected static class Task implements Runnable, Timeout {
+    public boolean cancel(final long handle) {
+        Task task = pool.get(handle);
+        return task != null && task.cancel((int) (handle >>> 32));
+    }
 
-        protected static final int INIT = 0;
+    /**
+     * 添加周期执行的任务，由时间轮原地重新装载同一个任务，不再每个周期创建新任务
+     *
+     * @param name         名称
+     * @param initialDelay 首次执行的延迟时间
+     * @param period       周期
+     * @param mode         调度方式
+     * @param runnable     执行任务
+     * @return 超时对象，放弃后整个周期任务停止
+     */
+    public Timeout schedulePeriodic(final String name, final long initialDelay, final long period,
+                                    final ScheduleMode mode, final Runnable runnable) {
+        if (runnable == null) {
+            return null;
+        } else if (period <= 0) {
+            throw new IllegalArgumentException("period must be greater than 0");
+        }
+        Shard shard = shard();
+        long interval = align(Math.max(toClockDuration(period), 1));
+        // 同时启动的同周期任务按照名称错开相位，不再落到同一个槽
+        long time = getLeastOneTick(clock.now() + toClockDuration(initialDelay) + (spread ? phase(name, interval) : 0));
+        return add(new PeriodicTask(name, time, runnable, shard, interval,
+                mode == null ? ScheduleMode.FIXED_RATE : mode), shard);
+    }
 
-        protected static final int CANCELLED = 1;
+    /**
+     * 根据键计算确定的相位偏移，相同的键总是得到相同的偏移，不同的键均匀分布在周期内
+     *
+     * @param key    键
+     * @param period 周期
+     * @return 偏移，取值[0, period)，单位与周期一致
+     */
+    public static long phase(final String key, final long period) {
+        if (key == null || period <= 1) {
+            return 0;
+        }
+        // 混合散列，避免名称相近的任务相位聚集
+        long hash = key.hashCode() * 0x9E3779B97F4A7C15L;
+        return Math.floorMod(hash ^ (hash >>> 29), period);
+    }
 
-        protected static final int EXPIRED = 2;
+    /**
+     * 周期任务装载时增加的随机延迟
+     *
+     * @return 延迟，单位与时钟一致
+     */
+    protected long jitter() {
+        return jitter <= 0 ? 0 : ThreadLocalRandom.current().nextLong(jitter + 1);
+    }
 
-        protected static final AtomicIntegerFieldUpdater<Task> STATE_UPDATER = AtomicIntegerFieldUpdater
-                .newUpdater(Task.class, "state");
+    /**
+     * 添加按照Cron表达式执行的任务
+     *
+     * @param name       名称
+     * @param expression Cron表达式，采用默认时区
+     * @param runnable   执行任务
+     * @return 超时对象，放弃后不再执行
+     */
+    public Timeout scheduleCron(final String name, final String expression, final Runnable runnable) {
+        return scheduleCron(name, new CronExpression(expression), runnable);
+    }
 
-        /**
-         * 名称
-         */
-        protected String name;
+    /**
+     * 添加按照Cron表达式执行的任务，由时间轮原地重新装载同一个任务，执行期间错过的时间直接跳过
+     *
+     * @param name     名称
+     * @param cron     预编译的Cron表达式，可以在多个任务之间共享
+     * @param runnable 执行任务
+     * @return 超时对象，放弃后不再执行
+     */
+    public Timeout scheduleCron(final String name, final CronExpression cron, final Runnable runnable) {
+        if (runnable == null) {
+            return null;
+        } else if (cron == null) {
+            throw new IllegalArgumentException("cron can not be null");
+        }
+        Shard shard = shard();
+        long fireTime = cron.next(toWallTime(clock.now()));
+        return add(new CronTask(name, getLeastOneTick(clock.toClockTime(fireTime)), runnable, shard, cron, fireTime), shard);
+    }
 
-        /**
-         * 执行的时间
-         */
-        protected long time;
+    /**
+     * 创建超时分组，分组内的任务可以通过{@link TimeoutGroup#cancel()}一次性放弃
+     *
+     * @return 超时分组
+     */
+    public TimeoutGroup group() {
+        return new TimeoutGroup(this);
+    }
 
-        /**
-         * 是否允许多次添加
-         */
-        // protected boolean allowMultiple;
-        /**
-         * 任务
-         */
-        protected Runnable runnable;
+    /**
+     * 获取指定周期的共享合并周期桶，相同周期的成员共用时间轮上的一个周期任务
+     *
+     * @param interval 周期(毫秒)
+     * @return 周期桶
+     */
+    public PeriodicBucket bucket(final long interval) {
+        return buckets.computeIfAbsent(interval, i -> new PeriodicBucket(this, null, i, PeriodicBucket.DEFAULT_CHUNK_SIZE));
+    }
 
-        /**
-         * 执行完毕的消费者
-         */
-        protected Consumer<Task> afterRun;
+    /**
+     * 创建独立的合并周期桶
+     *
+     * @param name      名称
+     * @param interval  周期(毫秒)
+     * @param chunkSize 分块大小，成员数超过该值时按块分发到工作线程并行执行，小于等于0表示不分块
+     * @return 周期桶
+     */
+    public PeriodicBucket bucket(final String name, final long interval, final int chunkSize) {
+        return new PeriodicBucket(this, name, interval, chunkSize);
+    }
 
-        /**
-         * 放弃的消费者
-         */
-        protected Consumer<Task> afterCancel;
+    /**
+     * 创建按键管理的可刷新超时，每次刷新只推后截止时间，不分配对象
+     *
+     * @param name   名称
+     * @param expire 过期的消费者
+     * @param <K>    键
+     * @return 可刷新超时
+     */
+    public <K> KeyedTimeouts<K> keyed(final String name, final Consumer<K> expire) {
+        return new KeyedTimeouts<>(this, name, expire);
+    }
 
-        /**
-         * 时间槽
+    /**
+     * 添加分组任务
+     *
+     * @param name     名称
+     * @param time     执行时间
+     * @param runnable 执行任务
+     * @param group    分组
+     * @return 超时对象
+     */
+    protected Timeout add(final String name, final long time, final Runnable runnable, final TimeoutGroup group) {
+        Shard shard = shard();
+        Task task = new Task(name, time, runnable, shard);
+        task.group = group;
+        task.epoch = group.epoch;
+        return add(task, shard);
+    }
+
+    /**
+     * 添加任务
+     *
+     * @param name     名称
+     * @param time     执行时间
+     * @param runnable 执行任务
+     * @param shard    分片
+     * @return 超时对象
+     */
+    protected Timeout add(final String name, final long time, final Runnable runnable, final Shard shard) {
+        return add(new Task(name, time, runnable, shard), shard);
+    }
+
+    /**
+     * 添加任务
+     *
+     * @param task  任务
+     * @param shard 分片
+     * @return 超时对象
+     */
+    protected Timeout add(final Task task, final Shard shard) {
+        if (removed) {
+            // 没有调度线程推进，加入的任务永远不会执行
+            throw new IllegalStateException("timer has been removed from timer group " + group.name);
+        }
+        if (!demotions.isEmpty() && task.name != null) {
+            // 同名的任务曾经执行过慢，直接进入降级后的通道
+            Lane lane = demotions.get(task.name);
+            if (lane != null && lane.ordinal() > task.lane.ordinal()) {
+                task.lane = lane;
+            }
+        }
+        if (maxTasks > 0) {
+            if (shedTasks > 0 && isShed(task)) {
+                return discard(task);
+            }
+            tasks.increment();
+            // 分段计数器的汇总不是原子的，上限是近似值
+            if (tasks.sum() > maxTasks) {
+                tasks.decrement();
+                return overload(task, shard);
+            }
+        } else {
+            tasks.increment();
+        }
+        if (adaptive != null) {
+            adaptive.sample(task.time - clock.now());
+        }
+        shard.offer(task);
+        return task;
+    }
+
+    /**
+     * 待处理的任务达到削减水位后，名称匹配前缀的任务直接放弃
+     *
+     * @param task 任务
+     * @return 是否放弃
+     */
+    protected boolean isShed(final Task task) {
+        String name = task.name;
+        if (name != null && tasks.sum() >= shedTasks) {
+            for (String prefix : shedPrefixes) {
+                if (name.startsWith(prefix)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 待处理的任务超过上限，按照过载策略处理
+     *
+     * @param task  任务
+     * @param shard 分片
+     * @return 超时对象
+     */
+    protected Timeout overload(final Task task, final Shard shard) {
+        switch (overloadPolicy) {
+            case BLOCK:
+                long deadline = System.nanoTime() + blockNanos;
+                while (System.nanoTime() < deadline && !Thread.currentThread().isInterrupted()) {
+                    LockSupport.parkNanos(this, BLOCK_INTERVAL);
+                    tasks.increment();
+                    if (tasks.sum() <= maxTasks) {
+                        shard.offer(task);
+                        return task;
+                    }
+                    tasks.decrement();
+                }
+                break;
+            case CALLER_RUNS:
+                // 执行完毕会扣减计数
+                tasks.increment();
+                task.run();
+                return task;
+            case DISCARD_FURTHEST:
+                Victim victim = getFurthest();
+                if (victim.task == null || victim.time <= task.time) {
+                    return discard(task);
+                } else if (victim.cancel()) {
+                    tasks.increment();
+                    shard.offer(task);
+                    return task;
+                }
+                break;
+            default:
+        }
+        throw new RejectedExecutionException("the maximum of pending tasks is " + maxTasks);
+    }
+
+    /**
+     * 获取时间轮中过期时间最远的可放弃任务
+     *
+     * @return 待放弃的任务，没有找到时任务为空
+     */
+    protected Victim getFurthest() {
+        Victim result = new Victim();
+        for (Shard shard : shards) {
+            shard.timeWheel.getFurthest(result);
+        }
+        return result;
+    }
+
+    /**
+     * 放弃还没有加入的任务，不计数
+     *
+     * @param task 任务
+     * @return 已放弃的超时对象
+     */
+    protected Timeout discard(final Task task) {
+        task.stamp = (task.stamp & ~Task.STATE_MASK) | Task.CANCELLED;
+        if (task.id >= 0) {
+            pool.release(task);
+        }
+        return task;
+    }
+
+    /**
+     * 待处理的任务数量
+     *
+     * @return 任务数量
+     */
+    public long getTasks() {
+        return tasks.sum();
+    }
+
+    /**
+     * 分片数量
+     *
+     * @return 分片数量
+     */
+    public int getShards() {
+        return shards.length;
+    }
+
+    /**
+     * 获取上层时间轮的任务级联到下层的累计次数，统计值由调度线程更新
+     *
+     * @return 级联次数
+     */
+    public long getCascades() {
+        long result = 0;
+        for (Shard shard : shards) {
+            result += shard.cascades;
+        }
+        return result;
+    }
+
+    /**
+     * 获取运行指标
+     *
+     * @return 运行指标
+     */
+    public TimerMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 获取时钟
+     *
+     * @return 时钟
+     */
+    public Clock getClock() {
+        return clock;
+    }
+
+    /**
+     * 时间轮分片，拥有独立的时间轮、延迟队列、待分配任务队列和调度线程
+     */
+    protected class Shard {
+
+        /**
+         * 延迟队列，{@link Driver#DELAY_QUEUE}模式下所有层级的槽都进入该队列
          */
-        protected volatile TimeWheel.Slot slot;
+        protected DelayQueue<TimeWheel.Slot> queue;
 
         /**
-         * 下一个节点
+         * 溢出层级的槽，{@link Driver#BUCKET}模式下只有上层时间轮的槽进入该队列，由调度线程单独访问
          */
-        protected Task next;
+        protected PriorityQueue<TimeWheel.Slot> overflows;
 
         /**
-         * 上一个节点
+         * 底层时间轮
          */
-        protected Task pre;
+        protected volatile TimeWheel timeWheel;
+
+        /**
+         * 当前时间轮的布局，自适应时使用
+         */
+        protected int[] layout;
+
+        /**
+         * 待分配的任务，防止并发
+         */
+        protected TaskQueue flying = new TaskQueue(TaskQueue.FLYING_UPDATER);
+
+        /**
+         * 任务执行之前的消费者
+         */
+        protected Consumer<Task> beforeRun;
+
+        /**
+         * 调度线程
+         */
+        protected volatile Thread thread;
+
+        /**
+         * 调度线程是否在等待，1表示等待中，新增任务时需要唤醒
+         */
+        protected volatile int sleeping;
+
+        /**
+         * 用于唤醒延迟队列的占位槽
+         */
+        protected TimeWheel.Slot wakeup;
+
+        /**
+         * 上一跳分配任务达到上限，还有积压的任务
+         */
+        protected boolean backlog;
+
+        /**
+         * 上层时间轮的槽过期后级联的消费者
+         */
+        protected Consumer<Task> cascade;
+
+        /**
+         * 级联次数，只由调度线程修改
+         */
+        protected long cascades;
+
+        /**
+         * 入队的任务数
+         */
+        protected final LongAdder offers = new LongAdder();
+
+        /**
+         * 出队的任务数，只由调度线程修改
+         */
+        protected volatile long polls;
+
+        /**
+         * 最近一次推进时间轮落后于计划的时间
+         */
+        protected volatile long lag;
+
+        /**
+         * 一跳分配的任务达到上限的次数，只由调度线程修改
+         */
+        protected volatile long capHits;
+
+        /**
+         * 超出每跳派发额度而顺延的任务，只由调度线程访问，不限制时为空
+         */
+        protected ArrayDeque<Task> releases;
 
         /**
-         * 状态
+         * 执行通道拒绝的任务数，只由调度线程修改
          */
-        protected volatile int state = INIT;
+        protected volatile long rejections;
+
+        /**
+         * 本跳已经派发的任务数
+         */
+        protected int released;
+
+        /**
+         * 派发额度所属的跳
+         */
+        protected long releaseTick;
 
         /**
          * 构造函数
          *
-         * @param name        名称
-         * @param time        运行的时间点
-         * @param runnable    执行器
-         * @param afterRun    运行完消费者
-         * @param afterCancel 放弃消费者
+         * @param tickTime 每一跳时间
+         * @param ticks    时间轮有几条
          */
-        public Task(final String name, final long time, final Runnable runnable, final Consumer<Task> afterRun,
-                    final Consumer<Task> afterCancel) {
-            this.time = time;
-            this.name = name;
-            this.runnable = runnable;
-            this.afterRun = afterRun;
-            this.afterCancel = afterCancel;
-            this.slot = null;
-            this.next = null;
-            this.pre = null;
+        public Shard(final long tickTime, final int ticks) {
+            this.beforeRun = this::supply;
+            if (releaseRate > 0) {
+                this.releases = new ArrayDeque<>();
+            }
+            if (adaptive != null) {
+                this.layout = adaptive.getLayout();
+            }
+            this.cascade = task -> {
+                cascades++;
+                supply(task);
+            };
+            if (driver != Driver.DELAY_QUEUE) {
+                this.overflows = new PriorityQueue<>();
+                this.timeWheel = new TimeWheel(tickTime, ticks, clock.now(), overflows, true, clock);
+            } else {
+                this.queue = new DelayQueue<>();
+                this.timeWheel = new TimeWheel(tickTime, ticks, clock.now(), queue, false, clock);
+                this.wakeup = new TimeWheel.Slot(timeWheel);
+                this.wakeup.expiration = 0;
+            }
         }
 
-        protected String getName() {
-            return name;
+        /**
+         * 调度线程的主循环
+         */
+        protected void run() {
+            thread = Thread.currentThread();
+            while (!Shutdown.isShutdown()) {
+                try {
+                    if (driver == Driver.BUCKET) {
+                        scan();
+                    } else {
+                        poll();
+                    }
+                } catch (InterruptedException e) {
+                    log.error(e.getMessage(), e);
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (Exception e) {
+                    log.error(e.getMessage(), e);
+                }
+            }
         }
 
-        protected long getTime() {
-            return time;
+        /**
+         * 所属的定时器
+         *
+         * @return 定时器
+         */
+        protected Timer timer() {
+            return Timer.this;
         }
 
-        @Override
-        public String toString() {
-            return name == null || name.isEmpty() ? super.toString() : name;
+        /**
+         * 添加待分配的任务，调度线程在等待则唤醒它
+         *
+         * @param task 任务
+         */
+        protected void offer(final Task task) {
+            offers.increment();
+            flying.offer(task);
+            if (group != null) {
+                group.wakeup();
+            } else if (sleeping == 1 && SLEEPING_UPDATER.compareAndSet(this, 1, 0)) {
+                if (driver == Driver.BUCKET) {
+                    LockSupport.unpark(thread);
+                } else {
+                    queue.offer(wakeup);
+                }
+            }
         }
 
-        @Override
-        public void run() {
-            if (STATE_UPDATER.compareAndSet(this, INIT, EXPIRED)) {
-                runnable.run();
-                if (afterRun != null) {
-                    afterRun.accept(this);
+        /**
+         * 从延迟队列拉取过期的槽。没有待分配的任务时一直等到最早的槽过期或者被新增任务唤醒
+         *
+         * @throws InterruptedException 中断异常
+         */
+        protected void poll() throws InterruptedException {
+            TimeWheel.Slot slot;
+            if (backlog) {
+                slot = queue.poll();
+            } else {
+                sleeping = 1;
+                try {
+                    // 先声明等待再检查队列，新增任务的线程先入队再检查等待标识，不会丢失唤醒
+                    if (!flying.isEmpty()) {
+                        slot = queue.poll();
+                    } else if (releases == null || releases.isEmpty()) {
+                        slot = queue.poll(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+                    } else {
+                        // 还有顺延的任务，最多等到下一跳
+                        slot = queue.poll(unit.toNanos(tickTime), TimeUnit.NANOSECONDS);
+                    }
+                } finally {
+                    sleeping = 0;
+                }
+            }
+            if (Shutdown.isShutdown()) {
+                return;
+            }
+            long now = clock.now();
+            adapt(now);
+            // 先派发顺延的任务，再处理新过期的任务
+            release(now);
+            // 添加新增的任务，如果当前任务已经过期则立刻执行，否则放入后续的槽中
+            backlog = supply();
+            // 执行所有已经过期的槽，之后才能按照实际时间推进，避免槽被复用
+            if (slot != null && slot != wakeup) {
+                lag = now - slot.expiration;
+            }
+            while (slot != null) {
+                if (slot != wakeup) {
+                    timeWheel.advance(slot.expiration);
+                    slot.flush(slot.wheel == timeWheel ? beforeRun : cascade);
                 }
+                slot = queue.poll();
             }
+            // 按照实际流逝的时间推进
+            timeWheel.advance(now);
         }
 
-        @Override
-        public boolean isExpired() {
-            return state == EXPIRED;
+        /**
+         * 等到最早的非空槽过期，逐跳扫描底层时间轮当前位置的槽，上层时间轮的槽按照过期时间从溢出队列里获取
+         */
+        protected void scan() {
+            long now = clock.now();
+            long deadline = advance(now);
+            if (now < deadline) {
+                sleeping = 1;
+                // 先声明等待再检查队列，不会丢失唤醒
+                if (flying.isEmpty()) {
+                    await(now, deadline);
+                }
+                sleeping = 0;
+            }
         }
 
-        @Override
-        public boolean isCancelled() {
-            return state == CANCELLED;
+        /**
+         * 分配新增的任务，逐跳推进时间轮到当前时间
+         *
+         * @param now 当前时间
+         * @return 下一次需要推进的时间，还有积压的任务则返回当前时间
+         */
+        protected long advance(final long now) {
+            backlog = supply();
+            long time;
+            while (timeWheel.now + timeWheel.tickTime <= now) {
+                time = next(now);
+                lag = now - time;
+                expire(time);
+            }
+            if (backlog) {
+                return now;
+            }
+            long deadline = getDeadline();
+            return releases == null || releases.isEmpty() ? deadline : Math.min(deadline, timeWheel.now + timeWheel.tickTime);
         }
 
-        @Override
-        public boolean cancel() {
-            if (STATE_UPDATER.compareAndSet(this, INIT, CANCELLED)) {
-                if (afterCancel != null) {
-                    afterCancel.accept(this);
+        /**
+         * 获取下一步推进到的时间，底层时间轮为空则直接跳到当前时间或者最早的溢出槽
+         *
+         * @param now 当前时间
+         * @return 推进到的时间
+         */
+        protected long next(final long now) {
+            long time = timeWheel.now + timeWheel.tickTime;
+            if (timeWheel.size == 0 && (releases == null || releases.isEmpty())) {
+                TimeWheel.Slot slot = overflows.peek();
+                return Math.max(time, slot == null ? now : Math.min(now, slot.expiration));
+            }
+            return time;
+        }
+
+        /**
+         * 推进时间轮，执行当前位置的槽，上层时间轮过期的槽级联到下层或者直接执行
+         *
+         * @param time 推进到的时间
+         */
+        protected void expire(final long time) {
+            adapt(time);
+            release(time);
+            timeWheel.advance(time);
+            TimeWheel.Slot slot = timeWheel.current();
+            if (slot.expiration != -1L) {
+                slot.flush(beforeRun);
+            }
+            while ((slot = overflows.peek()) != null && slot.expiration <= timeWheel.now) {
+                overflows.poll();
+                slot.flush(cascade);
+            }
+        }
+
+        /**
+         * 自适应布局发生变化则切换到新的时间轮
+         *
+         * @param now 当前时间
+         */
+        protected void adapt(final long now) {
+            if (adaptive != null) {
+                int[] target = adaptive.evaluate(now);
+                if (target != layout) {
+                    relayout(target);
                 }
-                return true;
             }
-            return false;
         }
 
         /**
-         * 移除
+         * 切换到新布局的时间轮。旧时间轮上层的槽仍然在队列里，过期时按照级联放入新的时间轮；
+         * 逐跳扫描的底层槽不在队列里，立即级联到新的时间轮
+         *
+         * @param target 新的布局
+         */
+        protected void relayout(final int[] target) {
+            TimeWheel old = timeWheel;
+            boolean scanning = driver != Driver.DELAY_QUEUE;
+            layout = target;
+            timeWheel = new TimeWheel(tickTime, target, old.now, scanning ? overflows : queue, scanning, clock);
+            if (scanning) {
+                for (TimeWheel.Slot slot : old.slots) {
+                    if (slot.expiration != -1L) {
+                        slot.flush(cascade);
+                    }
+                }
+            }
+            log.info("Timer wheel is relaid out to {} ticks per level", Arrays.toString(target));
+        }
+
+        /**
+         * 等待到截止时间，先park到自旋窗口，再自旋到截止时间；没有自旋窗口则park到截止时间，提前醒来继续park剩余的时间。
+         * 新增任务会清除等待标识，提前返回
+         *
+         * @param now      当前时间
+         * @param deadline 截止时间
          */
-        void remove() {
-            if (slot != null) {
-                slot.remove(this);
+        protected void await(long now, final long deadline) {
+            if (deadline == Long.MAX_VALUE) {
+                LockSupport.park(this);
+                return;
             }
+            if (spinTime <= 0) {
+                // 缓存的时钟可能还没有刷新到截止时间，不能自旋等待
+                while (now < deadline && sleeping == 1 && !Thread.currentThread().isInterrupted()) {
+                    LockSupport.parkNanos(this, unit.toNanos(deadline - now));
+                    now = clock.now();
+                }
+                return;
+            }
+            if (deadline - now > spinTime) {
+                LockSupport.parkNanos(this, unit.toNanos(deadline - now - spinTime));
+                now = clock.now();
+            }
+            while (now < deadline && sleeping == 1) {
+                now = clock.now();
+            }
+        }
+
+        /**
+         * 获取最早的非空槽的过期时间
+         *
+         * @return 过期时间，没有任务返回Long.MAX_VALUE
+         */
+        protected long getDeadline() {
+            long result = timeWheel.getExpiration();
+            TimeWheel.Slot slot = overflows.peek();
+            return slot == null ? result : Math.min(result, slot.expiration);
         }
 
+        /**
+         * 添加任务
+         *
+         * @return 达到上限还有积压的任务
+         */
+        protected boolean supply() {
+            Task task;
+            // 添加任务，1跳最多10万次
+            for (int i = 0; i < 100000; i++) {
+                task = flying.poll();
+                if (task == null) {
+                    if (i > 0) {
+                        polls += i;
+                    }
+                    return false;
+                }
+                supply(task);
+            }
+            polls += 100000;
+            capHits++;
+            return true;
+        }
+
+        /**
+         * 添加任务，包括新增的任务和过期槽位中需要级联或执行的任务
+         *
+         * @param task 任务
+         */
+        protected void supply(final Task task) {
+            if (task.reclaim()) {
+                // 没能直接摘除的放弃任务和分组放弃的任务延迟到这里清理
+                recycle(task);
+            } else if (!timeWheel.add(task)) {
+                // 添加失败任务直接执行
+                execute(task);
+            }
+        }
+
+        /**
+         * 执行过期任务，优先使用任务指定的执行器
+         *
+         * @param task 任务
+         */
+        protected void execute(final Task task) {
+            if (releases != null) {
+                if (released >= releaseRate || !releases.isEmpty()) {
+                    // 本跳的额度用完，顺延到后续的跳，保持过期的顺序
+                    releases.offer(task);
+                    return;
+                }
+                released++;
+            }
+            dispatch(task);
+        }
+
+        /**
+         * 派发顺延的任务，进入新的一跳时重置额度
+         *
+         * @param now 当前时间
+         */
+        protected void release(final long now) {
+            if (releases == null) {
+                return;
+            }
+            long tick = now / tickTime;
+            if (tick != releaseTick) {
+                releaseTick = tick;
+                released = 0;
+            }
+            Task task;
+            while (released < releaseRate && (task = releases.poll()) != null) {
+                if (task.reclaim()) {
+                    // 顺延期间放弃的任务
+                    recycle(task);
+                } else {
+                    released++;
+                    dispatch(task);
+                }
+            }
+        }
+
+        /**
+         * 派发过期任务，优先使用任务指定的执行器
+         *
+         * @param task 任务
+         */
+        protected void dispatch(final Task task) {
+            Executor e = task.executor;
+            boolean owned = false;
+            if (e == null) {
+                e = lanes[task.lane.ordinal()];
+                // 定时器创建的执行通道和工作线程池
+                owned = e != executor || e == workerPool;
+            }
+            try {
+                e.execute(task);
+            } catch (RejectedExecutionException ex) {
+                if (owned) {
+                    reject(task);
+                } else {
+                    log.warn("Timer task is rejected by executor, run it on tick thread. name={}", task.name);
+                    runQuietly(task);
+                }
+            } catch (Throwable ex) {
+                // 在调度线程上执行的任务抛出异常，不能中断当前槽中其它任务的处理
+                log.error("Timer task execute error! name={}, message={}", task.name, ex.getMessage(), ex);
+            }
+        }
+
+        /**
+         * 执行通道或者有界的工作线程池拒绝的任务不在调度线程上执行，避免拖慢分片上的所有超时。周期任务跳过本次执行，其它任务放弃
+         *
+         * @param task 任务
+         */
+        protected void reject(final Task task) {
+            long count = ++rejections;
+            if ((count & (count - 1)) == 0) {
+                // 按照2的幂次报告，避免过载时刷屏
+                log.warn("Timer task is rejected by {} lane, total rejections={}, name={}", task.lane, count, task.name);
+            }
+            if (task instanceof PeriodicTask) {
+                ((PeriodicTask) task).skip();
+            } else if (task.cancel() || task.reclaim()) {
+                recycle(task);
+            }
+        }
+
+        /**
+         * 执行任务并吞掉异常
+         *
+         * @param task 任务
+         */
+        protected void runQuietly(final Task task) {
+            try {
+                task.run();
+            } catch (Throwable ex) {
+                log.error("Timer task execute error! name={}, message={}", task.name, ex.getMessage(), ex);
+            }
+        }
+
+        /**
+         * 任务开始执行，记录过期延迟
+         *
+         * @param task 任务
+         * @return 开始时间
+         */
+        protected long begin(final Task task) {
+            long now = clock.now();
+            metrics.lateness.record(now - task.getTime());
+            if (watchdog != null) {
+                watchdog.begin(task, now);
+            }
+            return now;
+        }
+
+        /**
+         * 任务执行结束，记录执行耗时，耗时过长则降级
+         *
+         * @param task  任务
+         * @param start 开始时间
+         */
+        protected void end(final Task task, final long start) {
+            long elapsed = clock.now() - start;
+            metrics.elapsed.record(elapsed);
+            if (watchdog != null) {
+                watchdog.end();
+            }
+            if (demoteTime > 0 && elapsed >= demoteTime && task.lane != Lane.BLOCKING) {
+                demote(task, elapsed);
+            }
+        }
+
+        /**
+         * 任务降级到更慢的通道，按照名称记录，同名的后续任务直接进入降级后的通道
+         *
+         * @param task    任务
+         * @param elapsed 执行耗时
+         */
+        protected void demote(final Task task, final long elapsed) {
+            Lane lane = task.lane.demote();
+            task.lane = lane;
+            String name = task.name;
+            if (name != null && (demotions.size() < MAX_DEMOTIONS || demotions.containsKey(name))) {
+                Lane old = demotions.get(name);
+                if (old == null || old.ordinal() < lane.ordinal()) {
+                    demotions.put(name, lane);
+                    log.warn("Timer task is demoted to {} lane, name={}, elapsed={} {}", lane, name, elapsed, unit);
+                }
+            }
+        }
+
+        /**
+         * 任务执行完毕
+         *
+         * @param task 任务
+         */
+        protected void afterRun(final Task task) {
+            tasks.decrement();
+            recycle(task);
+        }
+
+        /**
+         * 回收可回收的任务
+         *
+         * @param task 任务
+         */
+        protected void recycle(final Task task) {
+            if (task.id >= 0) {
+                pool.release(task);
+            }
+        }
+
+        /**
+         * 分组放弃的任务在过期时回收，扣减计数
+         */
+        protected void reclaim() {
+            tasks.decrement();
+        }
+
+        /**
+         * 放弃任务
+         *
+         * @param task 任务
+         */
+        protected void cancel(final Task task) {
+            tasks.decrement();
+            // 在调用线程上直接从槽中摘除，不经过调度线程。任务还在待分配队列或者正在级联时摘除失败，由调度线程延迟清理
+            if (task.remove()) {
+                recycle(task);
+            }
+        }
+    }
+
+    /**
+     * 任务
+     */
+    protected static class Task implements Runnable, Timeout {
+
+        protected static final int INIT = 0;
+
+        protected static final int CANCELLED = 1;
+
+        protected static final int EXPIRED = 2;
+
+        protected static final int RUNNING = 3;
+
+        protected static final int STATE_MASK = 3;
+
+        /**
+         * 戳，高位为代数，低2位为状态，通过CAS同时校验代数和状态
+         */
+        protected static final AtomicLongFieldUpdater<Task> STAMP_UPDATER = AtomicLongFieldUpdater
+                .newUpdater(Task.class, "stamp");
+
+        /**
+         * 名称
+         */
+        protected String name;
+
+        /**
+         * 执行的时间
+         */
+        protected long time;
+
+        /**
+         * 是否允许多次添加
+         */
+        // protected boolean allowMultiple;
+        /**
+         * 任务
+         */
+        protected Runnable runnable;
+
+        /**
+         * 所属分片
+         */
+        protected Shard shard;
+
+        /**
+         * 执行器，为空则使用执行通道的执行器
+         */
+        protected Executor executor;
+
+        /**
+         * 执行通道
+         */
+        protected Lane lane = Lane.NORMAL;
+
+        /**
+         * 在任务池中的序号，不可回收的任务为-1
+         */
+        protected final int id;
+
+        /**
+         * 时间槽
+         */
+        protected volatile TimeWheel.Slot slot;
+
+        /**
+         * 下一个节点
+         */
+        protected Task next;
+
+        /**
+         * 上一个节点
+         */
+        protected Task pre;
+
+        /**
+         * 待分配队列的下一个节点
+         */
+        protected volatile Task flyingNext;
+
+        /**
+         * 所属分组
+         */
+        protected TimeoutGroup group;
+
+        /**
+         * 加入分组时的纪元
+         */
+        protected int epoch;
+
+        /**
+         * 戳
+         */
+        protected volatile long stamp = INIT;
+
+        /**
+         * 构造函数
+         *
+         * @param name     名称
+         * @param time     运行的时间点
+         * @param runnable 执行器
+         * @param shard    所属分片
+         */
+        public Task(final String name, final long time, final Runnable runnable, final Shard shard) {
+            this.time = time;
+            this.name = name;
+            this.runnable = runnable;
+            this.shard = shard;
+            this.id = -1;
+        }
+
+        /**
+         * 构造可回收的任务
+         *
+         * @param id         在任务池中的序号
+         * @param generation 初始代数
+         */
+        protected Task(final int id, final int generation) {
+            this.id = id;
+            this.stamp = ((long) generation) << 2;
+        }
+
+        protected String getName() {
+            return name;
+        }
+
+        protected long getTime() {
+            return time;
+        }
+
+        /**
+         * 获取句柄，高32位为代数，低32位为序号
+         *
+         * @return 句柄
+         */
+        protected long getHandle() {
+            return ((stamp >>> 2) << 32) | id;
+        }
+
+        @Override
+        public String toString() {
+            return name == null || name.isEmpty() ? super.toString() : name;
+        }
+
+        @Override
+        public void run() {
+            Shard owner = shard;
+            if (!reclaim()) {
+                long s = stamp;
+                if ((s & STATE_MASK) == INIT && STAMP_UPDATER.compareAndSet(this, s, s | EXPIRED)) {
+                    long start = owner.begin(this);
+                    try {
+                        runnable.run();
+                    } finally {
+                        owner.end(this, start);
+                        owner.afterRun(this);
+                    }
+                    return;
+                }
+            }
+            if ((stamp & STATE_MASK) == CANCELLED) {
+                // 派发之后才放弃的任务已经不在槽中，放弃时没能摘除回收，在这里回收
+                owner.recycle(this);
+            }
+        }
+
+        @Override
+        public boolean isExpired() {
+            return (stamp & STATE_MASK) == EXPIRED;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            long state = stamp & STATE_MASK;
+            return state == CANCELLED || state == INIT && isAbandoned();
+        }
+
+        @Override
+        public long getRemainingNanos() {
+            // 先读取分片，任务回收后分片为空
+            Shard owner = shard;
+            if (owner == null || isExpired() || isCancelled()) {
+                return 0;
+            }
+            Timer timer = owner.timer();
+            return Math.max(0, timer.unit.toNanos(getTime() - timer.clock.now()));
+        }
+
+        /**
+         * 所属分组是否已经整体放弃
+         *
+         * @return 放弃标识
+         */
+        protected boolean isAbandoned() {
+            TimeoutGroup g = group;
+            return g != null && g.epoch != epoch;
+        }
+
+        /**
+         * 判断任务是否已经放弃，分组整体放弃的任务在这里转为放弃状态并扣减计数
+         *
+         * @return 放弃标识
+         */
+        protected boolean reclaim() {
+            long s = stamp;
+            long state = s & STATE_MASK;
+            if (state == INIT && isAbandoned() && STAMP_UPDATER.compareAndSet(this, s, s | CANCELLED)) {
+                shard.reclaim();
+                return true;
+            }
+            return (stamp & STATE_MASK) == CANCELLED;
+        }
+
+        @Override
+        public boolean cancel() {
+            long s = stamp;
+            // 分组已经整体放弃的任务由分组负责回收
+            return (s & STATE_MASK) == INIT && !isAbandoned() && compareAndCancel(s);
+        }
+
+        /**
+         * 校验代数后放弃
+         *
+         * @param generation 代数
+         * @return 成功标识
+         */
+        protected boolean cancel(final int generation) {
+            long s = stamp;
+            return (s >>> 2) == generation && (s & STATE_MASK) == INIT && !isAbandoned() && compareAndCancel(s);
+        }
+
+        /**
+         * 放弃
+         *
+         * @param s 期望的戳
+         * @return 成功标识
+         */
+        protected boolean compareAndCancel(final long s) {
+            // 先读取分片，放弃成功后任务可能立即被调度线程回收
+            Shard owner = shard;
+            if (STAMP_UPDATER.compareAndSet(this, s, s | CANCELLED)) {
+                owner.cancel(this);
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * 回收，代数加1，之前的句柄失效
+         */
+        protected void recycle() {
+            long generation = (stamp >>> 2) + 1;
+            name = null;
+            runnable = null;
+            shard = null;
+            executor = null;
+            lane = Lane.NORMAL;
+            group = null;
+            stamp = (generation > Integer.MAX_VALUE ? 1L : generation) << 2;
+        }
+
+        /**
+         * 从所在的槽中摘除，任务可能正被调度线程级联到其它槽，需要重试
+         *
+         * @return 成功标识
+         */
+        protected boolean remove() {
+            TimeWheel.Slot s;
+            while ((s = slot) != null) {
+                if (s.remove(this)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+    }
+
+    /**
+     * 周期任务，执行完毕后由时间轮重新装载自身，计数在放弃时才扣减
+     */
+    protected static class PeriodicTask extends Task {
+
+        /**
+         * 周期，单位与时钟一致
+         */
+        protected final long period;
+
+        /**
+         * 调度方式
+         */
+        protected final ScheduleMode mode;
+
+        /**
+         * 计划的执行时间，不含随机延迟，固定频率按照它推算下一次执行时间，随机延迟不会累积
+         */
+        protected long scheduled;
+
+        /**
+         * 构造函数
+         *
+         * @param name     名称
+         * @param time     首次执行时间
+         * @param runnable 执行任务
+         * @param shard    所属分片
+         * @param period   周期
+         * @param mode     调度方式
+         */
+        public PeriodicTask(final String name, final long time, final Runnable runnable, final Shard shard,
+                            final long period, final ScheduleMode mode) {
+            super(name, time, runnable, shard);
+            this.period = period;
+            this.mode = mode;
+            this.scheduled = time;
+        }
+
+        @Override
+        public void run() {
+            long s = stamp;
+            if ((s & STATE_MASK) != INIT || !STAMP_UPDATER.compareAndSet(this, s, s | RUNNING)) {
+                return;
+            }
+            long start = shard.begin(this);
+            try {
+                runnable.run();
+            } catch (Throwable e) {
+                log.error("Periodic task execute error! name={}, message={}", name, e.getMessage(), e);
+            }
+            shard.end(this, start);
+            Timer timer = shard.timer();
+            scheduled = next(timer.clock.now());
+            time = timer.align(scheduled + timer.jitter());
+            // 执行期间被放弃则不再装载
+            if (STAMP_UPDATER.compareAndSet(this, s | RUNNING, s)) {
+                shard.offer(this);
+            }
+        }
+
+        /**
+         * 跳过本次执行，直接装载到下一个周期
+         */
+        protected void skip() {
+            Timer timer = shard.timer();
+            scheduled = next(timer.clock.now());
+            time = timer.align(scheduled + timer.jitter());
+            shard.offer(this);
+        }
+
+        /**
+         * 计算下一次执行时间
+         *
+         * @param now 当前时间
+         * @return 下一次执行时间
+         */
+        protected long next(final long now) {
+            if (mode == ScheduleMode.FIXED_DELAY) {
+                return now + period;
+            }
+            long next = scheduled + period;
+            if (next <= now) {
+                // 跳过错过的周期，保持原有的相位
+                next += ((now - next) / period + 1) * period;
+            }
+            return next;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return false;
+        }
+
+        @Override
+        public boolean cancel() {
+            long s;
+            while (true) {
+                s = stamp;
+                switch ((int) (s & STATE_MASK)) {
+                    case INIT:
+                        return compareAndCancel(s);
+                    case RUNNING:
+                        // 正在执行，不在时间轮上，执行完毕后不会再装载
+                        if (STAMP_UPDATER.compareAndSet(this, s, (s & ~STATE_MASK) | CANCELLED)) {
+                            shard.reclaim();
+                            return true;
+                        }
+                        break;
+                    default:
+                        return false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Cron任务，按照表达式计算下一次执行时间，其余和周期任务一致
+     */
+    protected static class CronTask extends PeriodicTask {
+
+        /**
+         * 表达式
+         */
+        protected final CronExpression cron;
+
+        /**
+         * 本次执行的时间，墙上时间(毫秒)
+         */
+        protected long fireTime;
+
+        /**
+         * 构造函数
+         *
+         * @param name     名称
+         * @param time     首次执行时间
+         * @param runnable 执行任务
+         * @param shard    所属分片
+         * @param cron     表达式
+         * @param fireTime 首次执行的墙上时间
+         */
+        public CronTask(final String name, final long time, final Runnable runnable, final Shard shard,
+                        final CronExpression cron, final long fireTime) {
+            super(name, time, runnable, shard, 0, ScheduleMode.FIXED_RATE);
+            this.cron = cron;
+            this.fireTime = fireTime;
+        }
+
+        @Override
+        protected long next(final long now) {
+            Timer timer = shard.timer();
+            fireTime = cron.next(Math.max(fireTime, timer.toWallTime(now)));
+            return timer.clock.toClockTime(fireTime);
+        }
+    }
+
+    /**
+     * 持久化的任务，执行完毕或者放弃后追加放弃记录
+     */
+    protected static class JournalTask extends Task {
+
+        /**
+         * 日志
+         */
+        protected final TimerJournal journal;
+
+        /**
+         * 日志中的编号
+         */
+        protected final long journalId;
+
+        /**
+         * 构造函数
+         *
+         * @param name      名称
+         * @param time      执行时间
+         * @param runnable  执行任务
+         * @param shard     所属分片
+         * @param journal   日志
+         * @param journalId 日志中的编号
+         */
+        public JournalTask(final String name, final long time, final Runnable runnable, final Shard shard,
+                           final TimerJournal journal, final long journalId) {
+            super(name, time, runnable, shard);
+            this.journal = journal;
+            this.journalId = journalId;
+        }
+
+        @Override
+        public void run() {
+            try {
+                super.run();
+            } finally {
+                // 执行中崩溃则重启后再次执行
+                if (isExpired()) {
+                    journal.cancel(journalId);
+                }
+            }
+        }
+
+        @Override
+        protected boolean compareAndCancel(final long s) {
+            if (super.compareAndCancel(s)) {
+                journal.cancel(journalId);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 过载时选出的待放弃任务。调用线程不拥有时间轮，任务随时可能执行完毕并被回收复用，
+     * 因此在槽的锁内记录代数，放弃时校验代数
+     */
+    protected static class Victim {
+
+        /**
+         * 任务
+         */
+        protected Task task;
+
+        /**
+         * 选中时的代数
+         */
+        protected int generation;
+
+        /**
+         * 选中时的过期时间
+         */
+        protected long time;
+
+        /**
+         * 记录过期时间更远的任务，需要在任务所在槽的锁内调用
+         *
+         * @param candidate 候选任务
+         */
+        protected void offer(final Task candidate) {
+            long t = candidate.getTime();
+            if (task == null || t > time) {
+                task = candidate;
+                time = t;
+                generation = (int) (candidate.stamp >>> 2);
+            }
+        }
+
+        /**
+         * 校验代数后放弃
+         *
+         * @return 成功标识
+         */
+        protected boolean cancel() {
+            return task != null && task.cancel(generation);
+        }
+    }
+
+    /**
+     * 侵入式的多生产者单消费者队列，链接字段在任务上，入队和出队都不分配对象
+     */
+    protected static class TaskQueue {
+
+        protected static final AtomicReferenceFieldUpdater<Task, Task> FLYING_UPDATER = AtomicReferenceFieldUpdater
+                .newUpdater(Task.class, Task.class, "flyingNext");
+
+        protected static final AtomicReferenceFieldUpdater<TaskQueue, Task> TAIL_UPDATER = AtomicReferenceFieldUpdater
+                .newUpdater(TaskQueue.class, Task.class, "tail");
+
+        /**
+         * 链接字段
+         */
+        protected final AtomicReferenceFieldUpdater<Task, Task> link;
+
+        /**
+         * 占位节点
+         */
+        protected final Task stub = new Task(null, -1L, null, null);
+
+        /**
+         * 头节点，只有消费者访问
+         */
+        protected Task head = stub;
+
+        /**
+         * 尾节点，生产者竞争
+         */
+        protected volatile Task tail = stub;
+
+        /**
+         * 构造函数
+         *
+         * @param link 链接字段
+         */
+        public TaskQueue(final AtomicReferenceFieldUpdater<Task, Task> link) {
+            this.link = link;
+        }
+
+        /**
+         * 入队，多线程安全
+         *
+         * @param task 任务
+         */
+        public void offer(final Task task) {
+            link.lazySet(task, null);
+            Task prev = TAIL_UPDATER.getAndSet(this, task);
+            link.lazySet(prev, task);
+        }
+
+        /**
+         * 是否为空，只能由消费者调用
+         *
+         * @return 为空标识
+         */
+        public boolean isEmpty() {
+            return head == stub && tail == stub;
+        }
+
+        /**
+         * 出队，只能由单个消费者调用。生产者正在入队时可能暂时返回null，下一跳再获取
+         *
+         * @return 任务
+         */
+        public Task poll() {
+            Task h = head;
+            Task next = link.get(h);
+            if (h == stub) {
+                if (next == null) {
+                    return null;
+                }
+                head = next;
+                h = next;
+                next = link.get(next);
+            }
+            if (next != null) {
+                head = next;
+                return h;
+            }
+            if (h != tail) {
+                return null;
+            }
+            offer(stub);
+            next = link.get(h);
+            if (next != null) {
+                head = next;
+                return h;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 可回收任务池，每个线程持有有界的本地池，共享池也有上限。<br>
+     * 只有获取过任务的线程把任务归还到本地池，工作线程和调度线程归还的任务进入共享池，由调用线程成批取回；
+     * 共享池满了的任务退役，释放任务对象，序号和代数留给后续新建的任务。<br>
+     * 任务创建后注册到索引表中，通过句柄里的序号定位任务，句柄里的代数防止迟到的放弃误伤复用后的任务
+     */
+    protected static class TaskPool {
+
+        /**
+         * 线程本地池的容量
+         */
+        protected static final int LOCAL_CAPACITY = 256;
+
+        /**
+         * 从共享池一次取回的任务数
+         */
+        protected static final int BATCH = LOCAL_CAPACITY / 2;
+
+        /**
+         * 共享池的默认容量
+         */
+        protected static final int SHARED_CAPACITY = 1 << 16;
+
+        /**
+         * 线程本地池
+         */
+        protected final ThreadLocal<Stack> locals = ThreadLocal.withInitial(() -> new Stack(LOCAL_CAPACITY));
+
+        /**
+         * 共享池
+         */
+        protected final Stack shared;
+
+        /**
+         * 已创建的任务，按照序号索引，退役的任务为空
+         */
+        protected volatile Task[] registry = new Task[LOCAL_CAPACITY];
+
+        /**
+         * 各序号下一次使用的代数，只在退役和创建时访问
+         */
+        protected int[] generations = new int[LOCAL_CAPACITY];
+
+        /**
+         * 退役后空闲的序号
+         */
+        protected int[] frees = new int[LOCAL_CAPACITY];
+
+        /**
+         * 空闲的序号数量
+         */
+        protected int freeSize;
+
+        /**
+         * 已分配的序号数量
+         */
+        protected int size;
+
+        public TaskPool() {
+            this(SHARED_CAPACITY);
+        }
+
+        /**
+         * 构造函数
+         *
+         * @param sharedCapacity 共享池的容量
+         */
+        public TaskPool(final int sharedCapacity) {
+            this.shared = new Stack(Math.max(sharedCapacity, BATCH));
+        }
+
+        /**
+         * 获取任务
+         *
+         * @return 任务
+         */
+        public Task acquire() {
+            Stack local = locals.get();
+            local.producer = true;
+            Task task = local.pop();
+            if (task == null) {
+                synchronized (shared) {
+                    // 成批取回，摊薄加锁的开销
+                    for (int i = 0; i < BATCH && (task = shared.pop()) != null; i++) {
+                        local.push(task);
+                    }
+                }
+                task = local.pop();
+                if (task == null) {
+                    task = create();
+                }
+            }
+            return task;
+        }
+
+        /**
+         * 归还任务
+         *
+         * @param task 任务
+         */
+        public void release(final Task task) {
+            task.recycle();
+            Stack local = locals.get();
+            if (local.producer && local.push(task)) {
+                return;
+            }
+            boolean added;
+            synchronized (shared) {
+                added = shared.push(task);
+            }
+            if (!added) {
+                retire(task);
+            }
+        }
+
+        /**
+         * 根据句柄获取任务
+         *
+         * @param handle 句柄
+         * @return 任务
+         */
+        public Task get(final long handle) {
+            int id = (int) handle;
+            Task[] tasks = registry;
+            return handle <= 0 || id < 0 || id >= tasks.length ? null : tasks[id];
+        }
+
+        /**
+         * 创建任务并注册，优先复用退役任务的序号，代数接着退役时的代数
+         *
+         * @return 任务
+         */
+        protected synchronized Task create() {
+            Task[] tasks = registry;
+            int id;
+            int generation = 1;
+            if (freeSize > 0) {
+                id = frees[--freeSize];
+                generation = generations[id];
+            } else {
+                if (size == tasks.length) {
+                    tasks = Arrays.copyOf(tasks, tasks.length << 1);
+                    generations = Arrays.copyOf(generations, tasks.length);
+                }
+                id = size++;
+            }
+            Task task = new Task(id, generation);
+            tasks[id] = task;
+            registry = tasks;
+            return task;
+        }
+
+        /**
+         * 退役已回收的任务，注销后由垃圾回收释放
+         *
+         * @param task 任务
+         */
+        protected synchronized void retire(final Task task) {
+            int id = task.id;
+            generations[id] = (int) (task.stamp >>> 2);
+            if (freeSize == frees.length) {
+                frees = Arrays.copyOf(frees, frees.length << 1);
+            }
+            frees[freeSize++] = id;
+            Task[] tasks = registry;
+            tasks[id] = null;
+            registry = tasks;
+        }
+
+        /**
+         * 数组实现的栈
+         */
+        protected static class Stack {
+
+            protected final Task[] items;
+
+            protected int size;
+
+            /**
+             * 所属线程是否获取过任务，只有获取任务的线程才在本地池保留归还的任务
+             */
+            protected boolean producer;
+
+            public Stack(final int capacity) {
+                this.items = new Task[capacity];
+            }
+
+            /**
+             * 在容量范围内压栈
+             *
+             * @param task 任务
+             * @return 成功标识
+             */
+            public boolean push(final Task task) {
+                if (size == items.length) {
+                    return false;
+                }
+                items[size++] = task;
+                return true;
+            }
+
+            /**
+             * 出栈
+             *
+             * @return 任务
+             */
+            public Task pop() {
+                if (size == 0) {
+                    return null;
+                }
+                Task task = items[--size];
+                items[size] = null;
+                return task;
+            }
+        }
+    }
+
+    /**
+     * 看门狗，定期检查各执行线程上正在执行的任务，报告执行时间过长的任务
+     */
+    protected class Watchdog implements Runnable {
+
+        /**
+         * 报告的执行耗时，单位与时钟一致
+         */
+        protected final long threshold;
+
+        /**
+         * 执行线程的运行状态
+         */
+        protected final ThreadLocal<Running> local = ThreadLocal.withInitial(this::register);
+
+        /**
+         * 所有执行线程的运行状态
+         */
+        protected final CopyOnWriteArrayList<Running> runnings = new CopyOnWriteArrayList<>();
+
+        /**
+         * 报告的次数，只由看门狗线程修改
+         */
+        protected volatile long stalls;
+
+        public Watchdog(final long threshold) {
+            this.threshold = threshold;
+        }
+
+        /**
+         * 注册当前执行线程
+         *
+         * @return 运行状态
+         */
+        protected Running register() {
+            Running running = new Running(Thread.currentThread());
+            runnings.add(running);
+            return running;
+        }
+
+        /**
+         * 当前线程开始执行任务
+         *
+         * @param task  任务
+         * @param start 开始时间
+         */
+        protected void begin(final Task task, final long start) {
+            Running running = local.get();
+            running.start = start;
+            running.name = task.name == null ? "" : task.name;
+        }
+
+        /**
+         * 当前线程执行任务结束
+         */
+        protected void end() {
+            local.get().name = null;
+        }
+
+        @Override
+        public void run() {
+            long interval = Math.max(unit.toMillis(threshold) / 2, 1);
+            while (!Shutdown.isShutdown()) {
+                try {
+                    Thread.sleep(interval);
+                    check();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (Exception e) {
+                    log.error(e.getMessage(), e);
+                }
+            }
+        }
+
+        /**
+         * 检查正在执行的任务，每次执行只报告一次
+         */
+        protected void check() {
+            long now = clock.now();
+            String name;
+            long start;
+            for (Running running : runnings) {
+                if (!running.thread.isAlive()) {
+                    runnings.remove(running);
+                    continue;
+                }
+                name = running.name;
+                start = running.start;
+                if (name != null && start != running.reported && now - start >= threshold) {
+                    running.reported = start;
+                    stalls++;
+                    Throwable trace = new Throwable("stack of " + running.thread.getName());
+                    trace.setStackTrace(running.thread.getStackTrace());
+                    log.warn("Timer task is running too long, name={}, thread={}, elapsed={} {}",
+                            name, running.thread.getName(), now - start, unit, trace);
+                }
+            }
+        }
+    }
+
+    /**
+     * 执行线程的运行状态
+     */
+    protected static class Running {
+
+        /**
+         * 执行线程
+         */
+        protected final Thread thread;
+
+        /**
+         * 正在执行的任务名称，空闲时为空
+         */
+        protected volatile String name;
+
+        /**
+         * 开始时间
+         */
+        protected volatile long start;
+
+        /**
+         * 已经报告的开始时间，只由看门狗线程访问
+         */
+        protected long reported = Long.MIN_VALUE;
+
+        public Running(final Thread thread) {
+            this.thread = thread;
+        }
+    }
+
+    /**
+     * 驱动方式
+     */
+    public enum Driver {
+        /**
+         * 所有非空的槽进入延迟队列，调度线程从延迟队列拉取过期的槽
+         */
+        DELAY_QUEUE,
+        /**
+         * 调度线程每一跳扫描底层时间轮的当前位置，只有上层时间轮的槽进入优先级队列
+         */
+        BUCKET,
+        /**
+         * 没有调度线程，和{@link #BUCKET}的结构相同，由{@link ManualTimer}按照手动时钟同步推进
+         */
+        MANUAL
+    }
+
+    /**
+     * 构建器
+     */
+    public static final class Builder {
+        /**
+         * 默认的每一跳时间
+         */
+        protected static final long DEFAULT_TICK_TIME = 1;
+        /**
+         * 默认的跳数
+         */
+        protected static final int DEFAULT_TICKS = 512;
+        /**
+         * 名称
+         */
+        protected String name;
+        /**
+         * 每一跳时间，单位与时钟一致，默认为毫秒
+         */
+        protected long tickTime = DEFAULT_TICK_TIME;
+        /**
+         * 时间轮有几跳
+         */
+        protected int ticks = DEFAULT_TICKS;
+        /**
+         * 是否显式指定了每一跳时间
+         */
+        protected boolean tickTimeSet;
+        /**
+         * 是否显式指定了跳数
+         */
+        protected boolean ticksSet;
+        /**
+         * 是否显式指定了时钟
+         */
+        protected boolean clockSet;
+        /**
+         * 工作线程数
+         */
+        protected int workerThreads = Math.min(Runtime.getRuntime().availableProcessors() * 2 + 2, 10);
+        /**
+         * 最大待处理任务
+         */
+        protected long maxTasks;
+        /**
+         * 分片数量
+         */
+        protected int shards = 1;
+        /**
+         * 驱动方式
+         */
+        protected Driver driver = Driver.DELAY_QUEUE;
+        /**
+         * 过期任务的执行器
+         */
+        protected Executor executor;
+        /**
+         * 定时器分组
+         */
+        protected TimerGroup group;
+        /**
+         * 各执行通道指定的执行器
+         */
+        protected Executor[] laneExecutors = new Executor[Lane.values().length];
+        /**
+         * 各执行通道的线程数
+         */
+        protected int[] laneThreads = new int[Lane.values().length];
+        /**
+         * 各执行通道的队列大小
+         */
+        protected int[] laneQueues = new int[Lane.values().length];
+        /**
+         * 降级的执行耗时(毫秒)
+         */
+        protected long demoteTime;
+        /**
+         * 看门狗报告的执行耗时(毫秒)
+         */
+        protected long watchdogTime;
+        /**
+         * 过载策略
+         */
+        protected OverloadPolicy overloadPolicy = OverloadPolicy.ABORT;
+        /**
+         * 过载时最多等待的时间(毫秒)
+         */
+        protected long blockTime = 1000;
+        /**
+         * 削减任务的水位，最大待处理任务的比例
+         */
+        protected double shedWatermark = 1;
+        /**
+         * 削减的任务名称前缀
+         */
+        protected String[] shedPrefixes;
+        /**
+         * 工作队列大小，0表示不限制
+         */
+        protected int workerQueue;
+        /**
+         * 持久化日志
+         */
+        protected TimerJournal journal;
+        /**
+         * 自适应的时间轮布局
+         */
+        protected boolean adaptive;
+        /**
+         * 周期任务按照名称错开相位
+         */
+        protected boolean spread;
+        /**
+         * 周期任务的随机延迟上限(毫秒)
+         */
+        protected long jitter;
+        /**
+         * 每个分片每一跳最多派发的过期任务数
+         */
+        protected int releaseRate;
+        /**
+         * 时钟
+         */
+        protected Clock clock = Clock.MONOTONIC;
+        /**
+         * 到期前自旋等待的时间
+         */
+        protected long spinTime;
+
+        public Builder() {
+        }
+
+        public Builder name(String val) {
+            name = val;
+            return this;
+        }
+
+        public Builder tickTime(long val) {
+            tickTime = val;
+            tickTimeSet = true;
+            return this;
+        }
+
+        public Builder ticks(int val) {
+            ticks = val;
+            ticksSet = true;
+            return this;
+        }
+
+        public Builder workerThreads(int val) {
+            workerThreads = val;
+            return this;
+        }
+
+        public Builder maxTasks(long val) {
+            maxTasks = val;
+            return this;
+        }
+
+        public Builder shards(int val) {
+            shards = val;
+            return this;
+        }
+
+        public Builder driver(Driver val) {
+            driver = val;
+            return this;
+        }
+
+        /**
+         * 指定过期任务的执行器，例如事件循环、{@link Timer#INLINE}或者
+         * {@link io.meshware.common.concurrent.ExecutorServiceFactory#createVirtualThreadExecutor()}，
+         * 指定后不再创建工作线程池，为空则使用固定大小的工作线程池
+         *
+         * @param val 执行器
+         * @return builder
+         */
+        public Builder executor(Executor val) {
+            executor = val;
+            return this;
+        }
+
+        /**
+         * 指定时钟，默认为{@link Clock#MONOTONIC}，墙上时间的调整不会导致任务提前或推迟执行
+         *
+         * @param val 时钟
+         * @return builder
+         */
+        public Builder clock(Clock val) {
+            clock = val;
+            clockSet = true;
+            return this;
+        }
+
+        /**
+         * 调度线程在到期前自旋等待的时间，单位与时钟一致，只对{@link Driver#BUCKET}生效。
+         * 自旋可以弥补park几十微秒的唤醒延迟，代价是调度线程在每次到期前占用CPU
+         *
+         * @param val 自旋时间
+         * @return builder
+         */
+        public Builder spinTime(long val) {
+            spinTime = val;
+            return this;
+        }
+
+        /**
+         * 高精度模式，采用{@link Clock#MICROS}时钟和{@link Driver#BUCKET}驱动，一跳为指定的微秒数。
+         * 调度线程先park到到期前的一跳以内，再自旋到到期时间
+         *
+         * @param tickMicros 一跳的微秒数
+         * @return builder
+         */
+        public Builder highResolution(long tickMicros) {
+            clock = Clock.MICROS;
+            tickTime = tickMicros;
+            clockSet = true;
+            tickTimeSet = true;
+            driver = Driver.BUCKET;
+            spinTime = Math.max(tickMicros, 50);
+            return this;
+        }
+
+        /**
+         * 加入定时器分组，共享分组的调度线程和工作线程，最大待处理任务和运行指标仍然独立。<br>
+         * 分组内的定时器只有1个分片，采用分组的一跳时间、跳数、时钟和{@link Driver#BUCKET}驱动，
+         * 工作线程数和工作队列的配置不生效；分片数不为1、显式指定的一跳时间、跳数或时钟与分组不一致、
+         * 或者指定了{@link Driver#MANUAL}驱动，构建时抛出{@link IllegalArgumentException}
+         *
+         * @param val 定时器分组
+         * @return builder
+         */
+        public Builder group(TimerGroup val) {
+            group = val;
+            return this;
+        }
+
+        /**
+         * 指定执行通道的执行器，执行器拒绝的任务和{@link #lane(Lane, int, int)}一样处理
+         *
+         * @param lane 执行通道
+         * @param val  执行器
+         * @return builder
+         */
+        public Builder lane(Lane lane, Executor val) {
+            laneExecutors[lane.ordinal()] = val;
+            return this;
+        }
+
+        /**
+         * 为执行通道创建有界的线程池。队列满了的任务不会在调度线程上执行，而是被拒绝并计入
+         * {@link TimerMetrics#getRejections()}：周期任务跳过本次执行，其它任务被放弃
+         *
+         * @param lane      执行通道
+         * @param threads   线程数
+         * @param queueSize 队列大小，0表示不排队，没有空闲线程时拒绝，小于0在构建时抛出{@link IllegalArgumentException}
+         * @return builder
+         */
+        public Builder lane(Lane lane, int threads, int queueSize) {
+            laneThreads[lane.ordinal()] = threads;
+            laneQueues[lane.ordinal()] = queueSize;
+            return this;
+        }
+
+        /**
+         * 任务执行耗时超过该值则降级到更慢的通道，同名的后续任务也进入降级后的通道
+         *
+         * @param millis 毫秒，小于等于0表示不降级
+         * @return builder
+         */
+        public Builder demoteTime(long millis) {
+            demoteTime = millis;
+            return this;
+        }
+
+        /**
+         * 启动看门狗，报告执行耗时超过该值的任务
+         *
+         * @param millis 毫秒，小于等于0表示不启动
+         * @return builder
+         */
+        public Builder watchdog(long millis) {
+            watchdogTime = millis;
+            return this;
+        }
+
+        /**
+         * 指定过载策略，需要配合{@link #maxTasks(long)}
+         *
+         * @param val 过载策略
+         * @return builder
+         */
+        public Builder overload(OverloadPolicy val) {
+            overloadPolicy = val;
+            return this;
+        }
+
+        /**
+         * {@link OverloadPolicy#BLOCK}策略下最多等待的时间
+         *
+         * @param millis 毫秒
+         * @return builder
+         */
+        public Builder blockTime(long millis) {
+            blockTime = millis;
+            return this;
+        }
+
+        /**
+         * 待处理的任务达到最大待处理任务的指定比例后，直接放弃名称匹配前缀的新任务，为其它任务保留容量，
+         * 需要配合{@link #maxTasks(long)}
+         *
+         * @param watermark 水位，最大待处理任务的比例，取值(0, 1]
+         * @param prefixes  任务名称前缀
+         * @return builder
+         */
+        public Builder shed(double watermark, String... prefixes) {
+            shedWatermark = watermark;
+            shedPrefixes = prefixes;
+            return this;
+        }
+
+        /**
+         * 工作线程池采用有界队列，队列满了的任务和{@link #lane(Lane, int, int)}一样被拒绝，不在调度线程上执行，
+         * 计入{@link TimerMetrics#getRejections()}：周期任务跳过本次执行，其它任务被放弃
+         *
+         * @param val 队列大小，小于等于0表示不限制
+         * @return builder
+         */
+        public Builder workerQueue(int val) {
+            workerQueue = val;
+            return this;
+        }
+
+        /**
+         * 持久化通过{@link #add(TimeTask)}添加的可序列化任务，启动时从日志恢复
+         *
+         * @param val 日志，一个日志只能给一个定时器使用
+         * @return builder
+         */
+        public Builder journal(TimerJournal val) {
+            journal = val;
+            return this;
+        }
+
+        /**
+         * 周期任务的首次执行时间按照名称增加确定的相位偏移，同时启动的同周期任务均匀分布在周期内
+         *
+         * @param val 错开标识
+         * @return builder
+         */
+        public Builder spread(boolean val) {
+            spread = val;
+            return this;
+        }
+
+        /**
+         * 周期任务每次装载增加[0, millis]的随机延迟，固定频率的任务不会因此漂移
+         *
+         * @param millis 随机延迟上限
+         * @return builder
+         */
+        public Builder jitter(long millis) {
+            jitter = millis;
+            return this;
+        }
+
+        /**
+         * 每个分片每一跳最多派发的过期任务数，大槽过期时超出的任务按照过期顺序顺延到后续的跳，平滑工作线程的负载
+         *
+         * @param val 每跳的任务数，0表示不限制
+         * @return builder
+         */
+        public Builder releaseRate(int val) {
+            releaseRate = val;
+            return this;
+        }
+
+        /**
+         * 按照采样的截止时间分布调整每层的跳数，减少级联，分布变化后在线切换布局。每一跳的时间保持不变
+         *
+         * @param val 自适应标识
+         * @return builder
+         */
+        public Builder adaptive(boolean val) {
+            adaptive = val;
+            return this;
+        }
+
+        public Timer build() {
+            return new Timer(this);
+        }
     }
 
 }
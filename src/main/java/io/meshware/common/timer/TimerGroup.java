@@ -0,0 +1,317 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.meshware.common.timer;
+
+import io.meshware.common.concurrent.NamedThreadFactory;
+import io.meshware.common.util.Shutdown;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 定时器分组，分组内的定时器共享一个调度线程和一个工作线程池。<br>
+ * 每个定时器保留独立的时间轮、最大待处理任务和运行指标，接口和独立的定时器一致。
+ * 调度线程依次推进每个定时器的时间轮，然后等到所有定时器中最早的过期时间，新增任务会唤醒它
+ */
+@Slf4j
+public class TimerGroup {
+
+    protected static final AtomicIntegerFieldUpdater<TimerGroup> SLEEPING_UPDATER = AtomicIntegerFieldUpdater
+            .newUpdater(TimerGroup.class, "sleeping");
+
+    /**
+     * 名称
+     */
+    protected String name;
+
+    /**
+     * 每一跳时间，单位与时钟一致
+     */
+    protected long tickTime;
+
+    /**
+     * 时间轮有几跳
+     */
+    protected int ticks;
+
+    /**
+     * 时钟
+     */
+    protected Clock clock;
+
+    /**
+     * 过期任务执行线程，指定了执行器时为空
+     */
+    protected ExecutorService workerPool;
+
+    /**
+     * 过期任务默认的执行器
+     */
+    protected Executor executor;
+
+    /**
+     * 分组内的定时器，写时复制
+     */
+    protected volatile Timer[] timers = new Timer[0];
+
+    /**
+     * 调度线程
+     */
+    protected Thread thread;
+
+    /**
+     * 调度线程是否在等待，1表示等待中
+     */
+    protected volatile int sleeping;
+
+    /**
+     * 构造函数
+     *
+     * @param name          名称
+     * @param workerThreads 工作线程数
+     */
+    public TimerGroup(final String name, final int workerThreads) {
+        this(builder().name(name).workerThreads(workerThreads));
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param builder 构建器
+     */
+    protected TimerGroup(final Builder builder) {
+        if (builder.tickTime <= 0) {
+            throw new IllegalArgumentException("tickTime must be greater than 0");
+        } else if (builder.ticks <= 0) {
+            throw new IllegalArgumentException("ticks must be greater than 0");
+        } else if (builder.workerThreads <= 0) {
+            throw new IllegalArgumentException("workerThreads must be greater than 0");
+        }
+        this.name = builder.name == null || builder.name.isEmpty() ? "timer-group" : builder.name;
+        this.tickTime = builder.tickTime;
+        this.ticks = builder.ticks;
+        this.clock = builder.clock == null ? Clock.MONOTONIC : builder.clock;
+        if (builder.executor != null) {
+            this.executor = builder.executor;
+        } else {
+            this.workerPool = Executors.newFixedThreadPool(builder.workerThreads, new NamedThreadFactory(name + "-worker", true));
+            this.executor = workerPool;
+        }
+        this.thread = new NamedThreadFactory(name + "-boss", true).newThread(this::run);
+        this.thread.start();
+    }
+
+    /**
+     * 构建构造器
+     *
+     * @return builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * 在分组内创建定时器
+     *
+     * @param name     名称
+     * @param maxTasks 最大待处理任务，小于等于0表示不限制
+     * @return 定时器
+     */
+    public Timer create(final String name, final long maxTasks) {
+        return Timer.builder().name(name).maxTasks(maxTasks).group(this).build();
+    }
+
+    /**
+     * 移除定时器，移除后定时器上的任务不再执行，新增任务抛出{@link IllegalStateException}
+     *
+     * @param timer 定时器
+     * @return 成功标识
+     */
+    public synchronized boolean remove(final Timer timer) {
+        Timer[] members = timers;
+        for (int i = 0; i < members.length; i++) {
+            if (members[i] == timer) {
+                timer.removed = true;
+                Timer[] result = new Timer[members.length - 1];
+                System.arraycopy(members, 0, result, 0, i);
+                System.arraycopy(members, i + 1, result, i, members.length - i - 1);
+                timers = result;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 获取分组内的定时器数量
+     *
+     * @return 定时器数量
+     */
+    public int size() {
+        return timers.length;
+    }
+
+    /**
+     * 添加定时器，由定时器的构造函数调用
+     *
+     * @param timer 定时器
+     */
+    protected synchronized void add(final Timer timer) {
+        Timer[] members = Arrays.copyOf(timers, timers.length + 1);
+        members[members.length - 1] = timer;
+        timers = members;
+        wakeup();
+    }
+
+    /**
+     * 新增任务后唤醒等待中的调度线程
+     */
+    protected void wakeup() {
+        if (sleeping == 1 && SLEEPING_UPDATER.compareAndSet(this, 1, 0)) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * 调度线程的主循环
+     */
+    protected void run() {
+        while (!Shutdown.isShutdown()) {
+            try {
+                tick();
+            } catch (Exception e) {
+                log.error(e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * 推进所有定时器的时间轮，然后等到最早的过期时间
+     */
+    protected void tick() {
+        long now = clock.now();
+        long deadline = Long.MAX_VALUE;
+        Timer[] members = timers;
+        for (Timer timer : members) {
+            for (Timer.Shard shard : timer.shards) {
+                deadline = Math.min(deadline, shard.advance(now));
+            }
+        }
+        if (now < deadline) {
+            sleeping = 1;
+            // 先声明等待再检查队列，不会丢失唤醒
+            if (members == timers && isEmpty(members)) {
+                if (deadline == Long.MAX_VALUE) {
+                    LockSupport.park(this);
+                } else {
+                    LockSupport.parkNanos(this, clock.getUnit().toNanos(deadline - now));
+                }
+            }
+            sleeping = 0;
+        }
+    }
+
+    /**
+     * 所有定时器都没有待分配的任务
+     *
+     * @param members 定时器
+     * @return 为空标识
+     */
+    protected boolean isEmpty(final Timer[] members) {
+        for (Timer timer : members) {
+            for (Timer.Shard shard : timer.shards) {
+                if (!shard.flying.isEmpty()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 构建器
+     */
+    public static final class Builder {
+        /**
+         * 名称
+         */
+        protected String name;
+        /**
+         * 每一跳时间，单位与时钟一致，默认为毫秒
+         */
+        protected long tickTime = 1;
+        /**
+         * 时间轮有几跳
+         */
+        protected int ticks = 512;
+        /**
+         * 工作线程数
+         */
+        protected int workerThreads = Math.min(Runtime.getRuntime().availableProcessors() * 2 + 2, 10);
+        /**
+         * 过期任务的执行器
+         */
+        protected Executor executor;
+        /**
+         * 时钟
+         */
+        protected Clock clock = Clock.MONOTONIC;
+
+        public Builder() {
+        }
+
+        public Builder name(String val) {
+            name = val;
+            return this;
+        }
+
+        public Builder tickTime(long val) {
+            tickTime = val;
+            return this;
+        }
+
+        public Builder ticks(int val) {
+            ticks = val;
+            return this;
+        }
+
+        public Builder workerThreads(int val) {
+            workerThreads = val;
+            return this;
+        }
+
+        public Builder executor(Executor val) {
+            executor = val;
+            return this;
+        }
+
+        public Builder clock(Clock val) {
+            clock = val;
+            return this;
+        }
+
+        public TimerGroup build() {
+            return new TimerGroup(this);
+        }
+    }
+
+}
@@ -0,0 +1,870 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.meshware.common.timer;
+
+import io.meshware.common.concurrent.NamedThreadFactory;
+import io.meshware.common.exception.SystemException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+/**
+ * 定时器的持久化日志，保存可序列化任务的调度和放弃记录，重启后恢复时间轮。<br>
+ * 记录追加到内存映射的段文件，段写满后滚动到新段。刷盘线程按照间隔批量调用force，多个调度共用一次刷盘；
+ * 开启同步模式后，调度要等到覆盖它的刷盘完成才返回。任务执行完毕同样追加放弃记录，执行中崩溃的任务重启后会再次执行。<br>
+ * 刷盘线程同时在后台压缩：最老的段没有存活的调度时直接删除，除当前段以外存活的比例不高于阈值时，
+ * 把最老的段中存活的记录复制到当前段后删除。
+ * 记录格式为[长度4字节][CRC32 4字节][类型1字节][编号8字节][时间8字节][序列化的任务]，放弃记录没有时间和任务，
+ * 恢复时遇到长度为0或者校验失败的记录即认为该段结束。<br>
+ * 删除的段和关闭时所有的段都主动解除内存映射，不等待垃圾回收释放地址空间和文件句柄
+ */
+@Slf4j
+public class TimerJournal implements Closeable {
+
+    /**
+     * 调度记录
+     */
+    protected static final byte SCHEDULE = 1;
+
+    /**
+     * 放弃记录
+     */
+    protected static final byte CANCEL = 2;
+
+    /**
+     * 记录头：长度和校验码
+     */
+    protected static final int HEADER = 8;
+
+    /**
+     * 放弃记录的长度
+     */
+    protected static final int CANCEL_LENGTH = 1 + 8;
+
+    /**
+     * 调度记录除任务以外的长度
+     */
+    protected static final int SCHEDULE_LENGTH = 1 + 8 + 8;
+
+    protected static final String PREFIX = "journal-";
+
+    protected static final String SUFFIX = ".log";
+
+    /**
+     * 序列化缓冲区
+     */
+    protected static final ThreadLocal<ByteArrayOutputStream> BUFFERS = ThreadLocal.withInitial(() -> new ByteArrayOutputStream(256));
+
+    /**
+     * 解除内存映射，不支持时为空
+     */
+    protected static final Unmapper UNMAPPER = getUnmapper();
+
+    /**
+     * 目录
+     */
+    protected final File directory;
+
+    /**
+     * 段大小
+     */
+    protected final int segmentSize;
+
+    /**
+     * 刷盘间隔(毫秒)
+     */
+    protected final long flushInterval;
+
+    /**
+     * 同步模式，调度等待刷盘完成
+     */
+    protected final boolean sync;
+
+    /**
+     * 存活比例低于该值的段会被压缩
+     */
+    protected final double compactRatio;
+
+    /**
+     * 锁，保护段、存活索引和写入位置
+     */
+    protected final Object lock = new Object();
+
+    /**
+     * 所有的段，从老到新
+     */
+    protected final ArrayDeque<Segment> segments = new ArrayDeque<>();
+
+    /**
+     * 存活的调度所在的段
+     */
+    protected final Map<Long, Segment> lives = new HashMap<>();
+
+    /**
+     * 校验
+     */
+    protected final CRC32 crc = new CRC32();
+
+    /**
+     * 当前写入的段
+     */
+    protected Segment tail;
+
+    /**
+     * 下一个编号
+     */
+    protected long sequence = 1;
+
+    /**
+     * 累计写入的字节数
+     */
+    protected long written;
+
+    /**
+     * 已经刷盘的字节数
+     */
+    protected volatile long flushed;
+
+    /**
+     * 等待刷盘的监视器
+     */
+    protected final Object signal = new Object();
+
+    /**
+     * 刷盘和解除映射互斥的监视器，不能对已经解除映射的缓冲区刷盘
+     */
+    protected final Object mapping = new Object();
+
+    /**
+     * 刷盘线程
+     */
+    protected Thread flusher;
+
+    /**
+     * 是否已经关闭
+     */
+    protected volatile boolean closed;
+
+    /**
+     * 构造函数
+     *
+     * @param directory 目录
+     */
+    public TimerJournal(final File directory) {
+        this(builder().directory(directory));
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param builder 构建器
+     */
+    protected TimerJournal(final Builder builder) {
+        if (builder.directory == null) {
+            throw new IllegalArgumentException("directory can not be null");
+        } else if (builder.segmentSize < 1024) {
+            throw new IllegalArgumentException("segmentSize must be greater than 1024");
+        } else if (builder.flushInterval <= 0) {
+            throw new IllegalArgumentException("flushInterval must be greater than 0");
+        }
+        this.directory = builder.directory;
+        this.segmentSize = builder.segmentSize;
+        this.flushInterval = builder.flushInterval;
+        this.sync = builder.sync;
+        this.compactRatio = builder.compactRatio;
+        if (!directory.exists() && !directory.mkdirs() || !directory.isDirectory()) {
+            throw new SystemException("can not create journal directory " + directory);
+        }
+    }
+
+    /**
+     * 构建构造器
+     *
+     * @return builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * 打开日志，读取所有的段，返回存活的调度，然后启动刷盘线程。由定时器在构造时调用
+     *
+     * @return 存活的调度，按照调度的顺序
+     */
+    protected List<Entry> recover() {
+        synchronized (lock) {
+            if (flusher != null) {
+                throw new IllegalStateException("journal is already opened");
+            }
+            File[] files = directory.listFiles((dir, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+            if (files != null) {
+                Arrays.sort(files);
+            }
+            Map<Long, Entry> entries = new LinkedHashMap<>();
+            if (files != null) {
+                for (File file : files) {
+                    Segment segment = map(file, Long.parseLong(file.getName().substring(PREFIX.length(),
+                            file.getName().length() - SUFFIX.length())));
+                    read(segment, entries);
+                    segments.addLast(segment);
+                }
+            }
+            if (segments.isEmpty()) {
+                segments.addLast(map(getFile(0), 0));
+            }
+            tail = segments.peekLast();
+            List<Entry> result = new ArrayList<>(entries.size());
+            for (Entry entry : entries.values()) {
+                entry.segment.lives++;
+                lives.put(entry.id, entry.segment);
+                try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(entry.payload))) {
+                    entry.task = (TimeTask) ois.readObject();
+                    entry.payload = null;
+                    result.add(entry);
+                } catch (Exception e) {
+                    log.error("Timer journal can not restore task {}, it is dropped. message={}", entry.id, e.getMessage(), e);
+                    append(CANCEL, entry.id, 0, null);
+                }
+            }
+            flusher = new NamedThreadFactory("timer-journal", true).newThread(this::run);
+            flusher.start();
+            return result;
+        }
+    }
+
+    /**
+     * 追加调度记录
+     *
+     * @param task 任务，需要可序列化
+     * @param time 执行时间，墙上时间(毫秒)
+     * @return 编号
+     */
+    public long schedule(final TimeTask task, final long time) {
+        // 在锁外面序列化
+        ByteArrayOutputStream bos = BUFFERS.get();
+        bos.reset();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+            oos.writeObject(task);
+        } catch (IOException e) {
+            throw new SystemException("can not serialize task " + task.getName(), e);
+        }
+        byte[] payload = bos.toByteArray();
+        long id;
+        long position;
+        synchronized (lock) {
+            id = sequence++;
+            position = append(SCHEDULE, id, time, payload);
+        }
+        await(position);
+        return id;
+    }
+
+    /**
+     * 追加放弃记录，执行完毕的任务同样调用该方法
+     *
+     * @param id 编号
+     */
+    public void cancel(final long id) {
+        long position;
+        synchronized (lock) {
+            if (closed || !lives.containsKey(id)) {
+                return;
+            }
+            position = append(CANCEL, id, 0, null);
+        }
+        await(position);
+    }
+
+    /**
+     * 存活的调度数量
+     *
+     * @return 数量
+     */
+    public int size() {
+        synchronized (lock) {
+            return lives.size();
+        }
+    }
+
+    /**
+     * 段的数量
+     *
+     * @return 数量
+     */
+    public int getSegments() {
+        synchronized (lock) {
+            return segments.size();
+        }
+    }
+
+    /**
+     * 追加记录，调用方持有锁
+     *
+     * @param type    类型
+     * @param id      编号
+     * @param time    时间
+     * @param payload 序列化的任务
+     * @return 写入后的累计字节数
+     */
+    protected long append(final byte type, final long id, final long time, final byte[] payload) {
+        if (closed) {
+            throw new IllegalStateException("journal is closed");
+        }
+        int length = type == SCHEDULE ? SCHEDULE_LENGTH + payload.length : CANCEL_LENGTH;
+        ByteBuffer buffer = reserve(length);
+        int start = buffer.position();
+        buffer.position(start + HEADER);
+        buffer.put(type).putLong(id);
+        if (type == SCHEDULE) {
+            buffer.putLong(time).put(payload);
+            tail.schedules++;
+            tail.lives++;
+            lives.put(id, tail);
+        } else {
+            Segment segment = lives.remove(id);
+            if (segment != null) {
+                segment.lives--;
+            }
+        }
+        seal(buffer, start, length);
+        return written;
+    }
+
+    /**
+     * 原样复制压缩段中存活的调度记录，调用方持有锁
+     *
+     * @param source 源缓冲区
+     * @param start  记录的开始位置
+     * @param length 记录体的长度
+     * @param id     编号
+     * @param from   源段
+     */
+    protected void copy(final ByteBuffer source, final int start, final int length, final long id, final Segment from) {
+        ByteBuffer buffer = reserve(length);
+        ByteBuffer record = source.duplicate();
+        record.limit(start + HEADER + length).position(start);
+        buffer.put(record);
+        from.lives--;
+        tail.schedules++;
+        tail.lives++;
+        tail.dirty = true;
+        written += HEADER + length;
+        lives.put(id, tail);
+    }
+
+    /**
+     * 在当前段预留空间，不够则滚动到新段
+     *
+     * @param length 记录体的长度
+     * @return 当前段的缓冲区
+     */
+    protected ByteBuffer reserve(final int length) {
+        if (HEADER + length > segmentSize) {
+            throw new IllegalArgumentException("journal record is too large, length=" + length);
+        }
+        if (tail.buffer.remaining() < HEADER + length) {
+            Segment segment = map(getFile(tail.index + 1), tail.index + 1);
+            segments.addLast(segment);
+            tail = segment;
+        }
+        return tail.buffer;
+    }
+
+    /**
+     * 写入校验码和长度，长度最后写入
+     *
+     * @param buffer 缓冲区
+     * @param start  记录的开始位置
+     * @param length 记录体的长度
+     */
+    protected void seal(final ByteBuffer buffer, final int start, final int length) {
+        ByteBuffer body = buffer.duplicate();
+        body.limit(start + HEADER + length).position(start + HEADER);
+        crc.reset();
+        crc.update(body);
+        buffer.putInt(start + 4, (int) crc.getValue());
+        buffer.putInt(start, length);
+        tail.dirty = true;
+        written += HEADER + length;
+    }
+
+    /**
+     * 读取段中的记录
+     *
+     * @param segment 段
+     * @param entries 存活的调度
+     */
+    protected void read(final Segment segment, final Map<Long, Entry> entries) {
+        ByteBuffer buffer = segment.buffer;
+        int position = 0;
+        int length;
+        while (position + HEADER <= segmentSize) {
+            length = buffer.getInt(position);
+            if (length < CANCEL_LENGTH || position + HEADER + length > segmentSize) {
+                break;
+            }
+            ByteBuffer body = buffer.duplicate();
+            body.limit(position + HEADER + length).position(position + HEADER);
+            crc.reset();
+            crc.update(body);
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                log.warn("Timer journal {} is truncated at {}", segment.file.getName(), position);
+                break;
+            }
+            byte type = buffer.get(position + HEADER);
+            long id = buffer.getLong(position + HEADER + 1);
+            sequence = Math.max(sequence, id + 1);
+            if (type == SCHEDULE) {
+                byte[] payload = new byte[length - SCHEDULE_LENGTH];
+                body.position(position + HEADER + SCHEDULE_LENGTH);
+                body.get(payload);
+                Entry old = entries.put(id, new Entry(id, buffer.getLong(position + HEADER + 9), payload, segment));
+                if (old != null) {
+                    // 压缩复制的记录
+                    old.segment.schedules--;
+                }
+                segment.schedules++;
+            } else {
+                entries.remove(id);
+            }
+            position += HEADER + length;
+        }
+        buffer.position(position);
+    }
+
+    /**
+     * 等待刷盘
+     *
+     * @param position 累计字节数
+     */
+    protected void await(final long position) {
+        if (!sync) {
+            return;
+        }
+        LockSupport.unpark(flusher);
+        synchronized (signal) {
+            while (flushed < position && !closed) {
+                try {
+                    signal.wait(flushInterval);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 刷盘线程的主循环
+     */
+    protected void run() {
+        long interval = TimeUnit.MILLISECONDS.toNanos(flushInterval);
+        while (!closed) {
+            try {
+                flush();
+                compact();
+                LockSupport.parkNanos(this, interval);
+            } catch (Throwable e) {
+                log.error("Timer journal flush error! message={}", e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * 刷盘，多个记录共用一次force
+     */
+    protected void flush() {
+        List<Segment> dirties = new ArrayList<>(2);
+        long position;
+        synchronized (lock) {
+            position = written;
+            if (position == flushed) {
+                return;
+            }
+            for (Segment segment : segments) {
+                if (segment.dirty) {
+                    segment.dirty = false;
+                    dirties.add(segment);
+                }
+            }
+        }
+        synchronized (mapping) {
+            for (Segment segment : dirties) {
+                // 收集以后可能已经被压缩删除
+                if (!segment.unmapped) {
+                    segment.buffer.force();
+                }
+            }
+        }
+        synchronized (signal) {
+            flushed = Math.max(flushed, position);
+            signal.notifyAll();
+        }
+    }
+
+    /**
+     * 压缩最老的段，存活的调度复制到当前段后删除
+     */
+    protected void compact() {
+        Segment head;
+        long required;
+        while (true) {
+            synchronized (lock) {
+                head = segments.peekFirst();
+                if (head == tail || closed || head.lives > 0 && !isCompactable()) {
+                    return;
+                } else if (head.lives > 0) {
+                    move(head);
+                }
+                required = written;
+            }
+            // 复制的记录先刷盘再删除源段
+            if (flushed < required) {
+                flush();
+            }
+            synchronized (lock) {
+                if (segments.peekFirst() != head || head.lives > 0) {
+                    return;
+                }
+                segments.pollFirst();
+            }
+            unmap(head);
+            if (!head.file.delete()) {
+                log.warn("Timer journal can not delete {}", head.file);
+            }
+        }
+    }
+
+    /**
+     * 除当前段以外，存活的调度比例不高于压缩比例。
+     * 段只能从最老的开始删除，否则删除的放弃记录会让更老段中的调度复活，因此按照整体比例判断是否压缩最老的段
+     *
+     * @return 可以压缩标识
+     */
+    protected boolean isCompactable() {
+        long schedules = 0;
+        long alive = 0;
+        for (Segment segment : segments) {
+            if (segment != tail) {
+                schedules += segment.schedules;
+                alive += segment.lives;
+            }
+        }
+        return alive <= schedules * compactRatio;
+    }
+
+    /**
+     * 把段中存活的调度复制到当前段，调用方持有锁
+     *
+     * @param segment 段
+     */
+    protected void move(final Segment segment) {
+        ByteBuffer buffer = segment.buffer;
+        int end = buffer.position();
+        int position = 0;
+        int length;
+        long id;
+        while (position < end) {
+            length = buffer.getInt(position);
+            if (buffer.get(position + HEADER) == SCHEDULE) {
+                id = buffer.getLong(position + HEADER + 1);
+                if (lives.get(id) == segment) {
+                    copy(buffer, position, length, id, segment);
+                }
+            }
+            position += HEADER + length;
+        }
+    }
+
+    /**
+     * 映射段文件
+     *
+     * @param file  文件
+     * @param index 序号
+     * @return 段
+     */
+    protected Segment map(final File file, final long index) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            return new Segment(file, index, buffer);
+        } catch (IOException e) {
+            throw new SystemException("can not map journal segment " + file, e);
+        }
+    }
+
+    /**
+     * 解除段的内存映射，解除后不能再访问缓冲区
+     *
+     * @param segment 段
+     */
+    protected void unmap(final Segment segment) {
+        synchronized (mapping) {
+            if (segment.unmapped) {
+                return;
+            }
+            segment.unmapped = true;
+            if (UNMAPPER != null) {
+                try {
+                    UNMAPPER.unmap(segment.buffer);
+                } catch (Throwable e) {
+                    log.warn("Timer journal can not unmap {}, message={}", segment.file, e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * 获取解除内存映射的方法，JDK9及以上采用Unsafe.invokeCleaner，JDK8采用DirectBuffer的Cleaner
+     *
+     * @return 解除内存映射的方法，不支持返回空
+     */
+    protected static Unmapper getUnmapper() {
+        try {
+            Class<?> type = Class.forName("sun.misc.Unsafe");
+            Method method = type.getMethod("invokeCleaner", ByteBuffer.class);
+            Field field = type.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            Object unsafe = field.get(null);
+            return buffer -> method.invoke(unsafe, buffer);
+        } catch (Throwable ignored) {
+            // JDK8没有invokeCleaner
+        }
+        try {
+            Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+            Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            return buffer -> {
+                Object target = cleaner.invoke(buffer);
+                if (target != null) {
+                    clean.invoke(target);
+                }
+            };
+        } catch (Throwable e) {
+            log.warn("Timer journal can not unmap segments explicitly, message={}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 段文件
+     *
+     * @param index 序号
+     * @return 文件
+     */
+    protected File getFile(final long index) {
+        return new File(directory, String.format("%s%020d%s", PREFIX, index, SUFFIX));
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        flush();
+        synchronized (lock) {
+            closed = true;
+            // 关闭以后不再读写段，刷盘线程也不会对解除映射的段刷盘
+            for (Segment segment : segments) {
+                unmap(segment);
+            }
+        }
+        synchronized (signal) {
+            signal.notifyAll();
+        }
+        LockSupport.unpark(flusher);
+    }
+
+    /**
+     * 段
+     */
+    protected static class Segment {
+        /**
+         * 文件
+         */
+        protected final File file;
+        /**
+         * 序号
+         */
+        protected final long index;
+        /**
+         * 映射的缓冲区，位置为写入位置
+         */
+        protected final MappedByteBuffer buffer;
+        /**
+         * 调度记录的数量
+         */
+        protected int schedules;
+        /**
+         * 存活的调度数量
+         */
+        protected int lives;
+        /**
+         * 有没有刷盘的写入
+         */
+        protected boolean dirty;
+        /**
+         * 已经解除内存映射，由刷盘和解除映射的监视器保护
+         */
+        protected boolean unmapped;
+
+        public Segment(final File file, final long index, final MappedByteBuffer buffer) {
+            this.file = file;
+            this.index = index;
+            this.buffer = buffer;
+        }
+    }
+
+    /**
+     * 解除内存映射
+     */
+    @FunctionalInterface
+    protected interface Unmapper {
+
+        /**
+         * 解除内存映射
+         *
+         * @param buffer 映射的缓冲区
+         * @throws Exception 异常
+         */
+        void unmap(ByteBuffer buffer) throws Exception;
+    }
+
+    /**
+     * 恢复的调度
+     */
+    protected static class Entry {
+        /**
+         * 编号
+         */
+        protected final long id;
+        /**
+         * 执行时间，墙上时间(毫秒)
+         */
+        protected final long time;
+        /**
+         * 序列化的任务
+         */
+        protected byte[] payload;
+        /**
+         * 所在的段
+         */
+        protected final Segment segment;
+        /**
+         * 任务
+         */
+        protected TimeTask task;
+
+        public Entry(final long id, final long time, final byte[] payload, final Segment segment) {
+            this.id = id;
+            this.time = time;
+            this.payload = payload;
+            this.segment = segment;
+        }
+    }
+
+    /**
+     * 构建器
+     */
+    public static final class Builder {
+        /**
+         * 目录
+         */
+        protected File directory;
+        /**
+         * 段大小，默认64M
+         */
+        protected int segmentSize = 64 * 1024 * 1024;
+        /**
+         * 刷盘间隔(毫秒)
+         */
+        protected long flushInterval = 10;
+        /**
+         * 同步模式
+         */
+        protected boolean sync;
+        /**
+         * 压缩的存活比例
+         */
+        protected double compactRatio = 0.5;
+
+        public Builder() {
+        }
+
+        public Builder directory(File val) {
+            directory = val;
+            return this;
+        }
+
+        public Builder segmentSize(int val) {
+            segmentSize = val;
+            return this;
+        }
+
+        public Builder flushInterval(long val) {
+            flushInterval = val;
+            return this;
+        }
+
+        /**
+         * 调度和放弃等待刷盘完成才返回，同一刷盘间隔内的请求共用一次刷盘
+         *
+         * @param val 同步标识
+         * @return builder
+         */
+        public Builder sync(boolean val) {
+            sync = val;
+            return this;
+        }
+
+        /**
+         * 除当前段以外存活的调度比例不高于该值时压缩最老的段，为0则只删除没有存活调度的段
+         *
+         * @param val 比例
+         * @return builder
+         */
+        public Builder compactRatio(double val) {
+            compactRatio = val;
+            return this;
+        }
+
+        public TimerJournal build() {
+            return new TimerJournal(this);
+        }
+    }
+
+}
@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.meshware.common.timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 定时器的运行指标，时间的单位与定时器的时钟一致。<br>
+ * 所有指标都可以由抓取线程随时读取，不加锁也不分配对象，读取到的是近似的瞬时值
+ */
+public class TimerMetrics {
+
+    /**
+     * 定时器
+     */
+    protected final Timer timer;
+
+    /**
+     * 任务实际开始执行和过期时间的差值
+     */
+    protected final Histogram lateness = new Histogram();
+
+    /**
+     * 任务执行耗时
+     */
+    protected final Histogram elapsed = new Histogram();
+
+    public TimerMetrics(final Timer timer) {
+        this.timer = timer;
+    }
+
+    public TimeUnit getUnit() {
+        return timer.unit;
+    }
+
+    public Histogram getLateness() {
+        return lateness;
+    }
+
+    public Histogram getElapsed() {
+        return elapsed;
+    }
+
+    /**
+     * 获取待处理的任务数，包括还没有放入时间轮的任务
+     *
+     * @return 待处理的任务数
+     */
+    public long getPending() {
+        return timer.getTasks();
+    }
+
+    /**
+     * 获取时间轮的层数，取所有分片的最大值
+     *
+     * @return 层数
+     */
+    public int getLevels() {
+        int result = 0;
+        int levels;
+        for (Timer.Shard shard : timer.shards) {
+            levels = 0;
+            for (TimeWheel wheel = shard.timeWheel; wheel != null; wheel = wheel.next) {
+                levels++;
+            }
+            result = Math.max(result, levels);
+        }
+        return result;
+    }
+
+    /**
+     * 获取指定层级时间轮上的任务数，第0层为底层时间轮
+     *
+     * @param level 层级
+     * @return 任务数
+     */
+    public long getPending(final int level) {
+        long result = 0;
+        TimeWheel wheel;
+        for (Timer.Shard shard : timer.shards) {
+            wheel = shard.timeWheel;
+            for (int i = 0; i < level && wheel != null; i++) {
+                wheel = wheel.next;
+            }
+            if (wheel != null) {
+                result += wheel.size;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 获取已经提交还没有放入时间轮的任务数
+     *
+     * @return 任务数
+     */
+    public long getFlying() {
+        long result = 0;
+        long polls;
+        for (Timer.Shard shard : timer.shards) {
+            // 先读取出队数，再读取入队数，保证差值不为负数
+            polls = shard.polls;
+            result += Math.max(0, shard.offers.sum() - polls);
+        }
+        return result;
+    }
+
+    /**
+     * 获取最近一次推进时间轮时，实际时间落后于计划时间的差值，取所有分片的最大值
+     *
+     * @return 落后的时间
+     */
+    public long getTickLag() {
+        long result = 0;
+        for (Timer.Shard shard : timer.shards) {
+            result = Math.max(result, shard.lag);
+        }
+        return result;
+    }
+
+    /**
+     * 获取一跳分配的任务达到上限的次数
+     *
+     * @return 次数
+     */
+    public long getCapHits() {
+        long result = 0;
+        for (Timer.Shard shard : timer.shards) {
+            result += shard.capHits;
+        }
+        return result;
+    }
+
+    /**
+     * 获取执行通道拒绝的任务数，被拒绝的周期任务跳过本次执行，其它任务被放弃
+     *
+     * @return 任务数
+     */
+    public long getRejections() {
+        long result = 0;
+        for (Timer.Shard shard : timer.shards) {
+            result += shard.rejections;
+        }
+        return result;
+    }
+
+    /**
+     * 获取看门狗报告执行时间过长的次数
+     *
+     * @return 次数，没有启动看门狗返回0
+     */
+    public long getStalls() {
+        Timer.Watchdog watchdog = timer.watchdog;
+        return watchdog == null ? 0 : watchdog.stalls;
+    }
+
+    /**
+     * 获取按照名称降级的任务数
+     *
+     * @return 任务名称的数量
+     */
+    public int getDemotions() {
+        return timer.demotions.size();
+    }
+
+    /**
+     * 获取上层时间轮的任务级联到下层的累计次数
+     *
+     * @return 级联次数
+     */
+    public long getCascades() {
+        return timer.getCascades();
+    }
+
+    /**
+     * 获取自适应布局切换的次数
+     *
+     * @return 切换次数，固定布局返回0
+     */
+    public long getRelayouts() {
+        return timer.adaptive == null ? 0 : timer.adaptive.getRelayouts();
+    }
+
+}
@@ -17,11 +17,11 @@
 package io.meshware.common.util;
 
 import io.meshware.common.entity.AsyncResult;
+import io.meshware.common.timer.Timeout;
+import io.meshware.common.timer.Timer;
 
 import java.util.Collection;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
 
@@ -157,38 +157,96 @@ public class Futures {
     }
 
     /**
-     * 确保线程在超时时间内完成
+     * 确保线程在超时时间内完成，使用默认的时间轮
      *
      * @param future  future
-     * @param timeout 超时时间
+     * @param timeout 超时时间(毫秒)
      * @param <T>     t
      * @return future
      */
     public static <T> CompletableFuture<T> timeout(final CompletableFuture<T> future, final long timeout) {
-        //启动线程判断超时
-        CountDownLatch latch = new CountDownLatch(1);
-        Thread thread = new Thread(() -> {
-            long time = System.currentTimeMillis();
-            while (!future.isDone() && (System.currentTimeMillis() - time) < timeout) {
-                try {
-                    latch.await(100, TimeUnit.MILLISECONDS);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    future.completeExceptionally(e);
-                    return;
-                }
-            }
-            //超时判断
-            if (!future.isDone()) {
-                future.completeExceptionally(new TimeoutException());
-            }
-        }, "future-timeout");
-        thread.setDaemon(true);
-        thread.start();
-        future.whenComplete((v, t) -> latch.countDown());
+        return timeout(future, timeout, Timer.timer());
+    }
+
+    /**
+     * 确保线程在超时时间内完成，超时任务注册到时间轮上，Future完成后放弃该任务
+     *
+     * @param future  future
+     * @param timeout 超时时间(毫秒)
+     * @param timer   时间轮
+     * @param <T>     t
+     * @return future
+     */
+    public static <T> CompletableFuture<T> timeout(final CompletableFuture<T> future, final long timeout, final Timer timer) {
+        if (future == null || future.isDone()) {
+            return future;
+        }
+        Timeout t = timer.delay("future-timeout", timeout, () -> future.completeExceptionally(new TimeoutException()));
+        future.whenComplete((v, e) -> t.cancel());
+        return future;
+    }
+
+    /**
+     * 在超时时间内没有完成，则以默认值完成，使用默认的时间轮
+     *
+     * @param future  future
+     * @param value   默认值
+     * @param timeout 超时时间(毫秒)
+     * @param <T>     t
+     * @return future
+     */
+    public static <T> CompletableFuture<T> completeOnTimeout(final CompletableFuture<T> future, final T value, final long timeout) {
+        return completeOnTimeout(future, value, timeout, Timer.timer());
+    }
+
+    /**
+     * 在超时时间内没有完成，则以默认值完成
+     *
+     * @param future  future
+     * @param value   默认值
+     * @param timeout 超时时间(毫秒)
+     * @param timer   时间轮
+     * @param <T>     t
+     * @return future
+     */
+    public static <T> CompletableFuture<T> completeOnTimeout(final CompletableFuture<T> future, final T value,
+                                                             final long timeout, final Timer timer) {
+        if (future == null || future.isDone()) {
+            return future;
+        }
+        Timeout t = timer.delay("future-complete-timeout", timeout, () -> future.complete(value));
+        future.whenComplete((v, e) -> t.cancel());
         return future;
     }
 
+    /**
+     * 构造延迟完成的Future，使用默认的时间轮
+     *
+     * @param value 值
+     * @param delay 延迟时间(毫秒)
+     * @param <T>   t
+     * @return future
+     */
+    public static <T> CompletableFuture<T> delayedFuture(final T value, final long delay) {
+        return delayedFuture(value, delay, Timer.timer());
+    }
+
+    /**
+     * 构造延迟完成的Future，调用方提前完成或取消Future时放弃时间轮上的任务
+     *
+     * @param value 值
+     * @param delay 延迟时间(毫秒)
+     * @param timer 时间轮
+     * @param <T>   t
+     * @return future
+     */
+    public static <T> CompletableFuture<T> delayedFuture(final T value, final long delay, final Timer timer) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Timeout t = timer.delay("future-delay", delay, () -> result.complete(value));
+        result.whenComplete((v, e) -> t.cancel());
+        return result;
+    }
+
     /**
      * 把消费者和Future组合成链
      *
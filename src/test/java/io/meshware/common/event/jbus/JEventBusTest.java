@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.meshware.common.event.jbus;
+
+import io.meshware.common.event.Event;
+import io.meshware.common.event.EventHandler;
+import io.meshware.common.event.Publisher;
+import io.meshware.common.event.PublisherConfig;
+import io.meshware.common.event.Recipient;
+import io.meshware.common.event.WaitStrategy;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 事件总线的测试
+ */
+public class JEventBusTest {
+
+    @Test
+    public void testBatchWithFailingHandler() throws InterruptedException {
+        for (WaitStrategy strategy : new WaitStrategy[]{null, WaitStrategy.SPIN_THEN_PARK}) {
+            List<Integer> failing = new CopyOnWriteArrayList<>();
+            List<Integer> normal = new CopyOnWriteArrayList<>();
+            Publisher<Item> publisher = publisher(strategy, failing, normal);
+            // 启动前入队，保证同一批派发
+            for (int i = 0; i < 10; i++) {
+                Assertions.assertTrue(publisher.offer(new Item(i)));
+            }
+            publisher.start();
+            await(normal, 10);
+            await(failing, 9);
+            Assertions.assertFalse(failing.contains(3));
+            publisher.close();
+        }
+    }
+
+    @Test
+    public void testBatchWithRecipient() throws InterruptedException {
+        for (WaitStrategy strategy : new WaitStrategy[]{null, WaitStrategy.SPIN_THEN_PARK}) {
+            List<Integer> failing = new CopyOnWriteArrayList<>();
+            List<Integer> normal = new CopyOnWriteArrayList<>();
+            Publisher<Item> publisher = publisher(strategy, failing, normal);
+            for (int i = 0; i < 10; i++) {
+                // 指定的处理器不存在，派发给所有处理器
+                Assertions.assertTrue(publisher.offer(i == 5 ? new RecipientItem(i, new Object()) : new Item(i)));
+            }
+            publisher.start();
+            await(failing, 9);
+            Assertions.assertFalse(failing.contains(3));
+            // 处理器的遍历顺序不确定，排在异常处理器之后时会错过该事件，与逐条派发一致
+            for (int i = 0; i < 10; i++) {
+                Assertions.assertTrue(i == 3 || normal.contains(i), normal.toString());
+            }
+            publisher.close();
+        }
+    }
+
+    /**
+     * 创建凑批的发布器，第一个处理器处理编号3时抛出异常
+     *
+     * @param strategy 等待策略，为空采用阻塞队列
+     * @param failing  第一个处理器处理的事件
+     * @param normal   第二个处理器处理的事件
+     * @return 发布器
+     */
+    protected Publisher<Item> publisher(final WaitStrategy strategy, final List<Integer> failing, final List<Integer> normal) {
+        PublisherConfig config = PublisherConfig.builder().capacity(64).waitStrategy(strategy).batchSize(16).linger(5).build();
+        Publisher<Item> publisher = new JEventBus().getPublisher("test", "batch-" + strategy, config);
+        publisher.addHandler((EventHandler<Item>) item -> {
+            if (item.value == 3) {
+                throw new IllegalStateException("failed");
+            }
+            failing.add(item.value);
+        });
+        publisher.addHandler((EventHandler<Item>) item -> normal.add(item.value));
+        return publisher;
+    }
+
+    /**
+     * 等待处理的事件数
+     *
+     * @param events 处理的事件
+     * @param count  事件数
+     * @throws InterruptedException 中断异常
+     */
+    protected void await(final List<Integer> events, final int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (events.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        Thread.sleep(20);
+        Assertions.assertEquals(count, events.size(), events.toString());
+    }
+
+    /**
+     * 事件
+     */
+    protected static class Item implements Event {
+        /**
+         * 编号
+         */
+        protected final int value;
+
+        public Item(final int value) {
+            this.value = value;
+        }
+    }
+
+    /**
+     * 指定处理器的事件
+     */
+    protected static class RecipientItem extends Item implements Recipient {
+        /**
+         * 处理器
+         */
+        protected final Object target;
+
+        public RecipientItem(final int value, final Object target) {
+            super(value);
+            this.target = target;
+        }
+
+        @Override
+        public Object getTarget() {
+            return target;
+        }
+    }
+}
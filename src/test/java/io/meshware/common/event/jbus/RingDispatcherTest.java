@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.meshware.common.event.jbus;
+
+import io.meshware.common.event.Event;
+import io.meshware.common.event.WaitStrategy;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * 环形缓冲区发布线程的测试
+ */
+public class RingDispatcherTest {
+
+    @Test
+    public void testMultiProducer() throws InterruptedException {
+        for (WaitStrategy strategy : WaitStrategy.values()) {
+            deliver(new JEventBus.RingDispatcher<>("ring-" + strategy, 64, strategy), 4, 20000);
+            deliver(new JEventBus.RingDispatcher<>("ring-batch-" + strategy, 64, strategy, 16, 1), 4, 20000);
+        }
+    }
+
+    @Test
+    public void testFull() throws InterruptedException {
+        JEventBus.RingDispatcher<Item> dispatcher = new JEventBus.RingDispatcher<>("ring-full", 4, WaitStrategy.SPIN_THEN_PARK);
+        AtomicInteger counter = new AtomicInteger();
+        Consumer<Item> consumer = item -> counter.incrementAndGet();
+        for (int i = 0; i < 4; i++) {
+            Assertions.assertTrue(dispatcher.offer(new Item(0, i), consumer));
+        }
+        // 没有启动派发线程，缓冲区满
+        Assertions.assertFalse(dispatcher.offer(new Item(0, 4), consumer));
+        long start = System.nanoTime();
+        Assertions.assertFalse(dispatcher.offer(new Item(0, 4), consumer, 20, TimeUnit.MILLISECONDS));
+        Assertions.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+        // 带超时的入队等到派发线程腾出槽位
+        Thread thread = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ignored) {
+            }
+            dispatcher.start();
+        });
+        thread.start();
+        Assertions.assertTrue(dispatcher.offer(new Item(0, 4), consumer, 1, TimeUnit.SECONDS));
+        await(() -> counter.get() == 5);
+        dispatcher.stop();
+    }
+
+    @Test
+    public void testWakeup() throws InterruptedException {
+        JEventBus.RingDispatcher<Item> dispatcher = new JEventBus.RingDispatcher<>("ring-wakeup", 16, WaitStrategy.SPIN_THEN_PARK);
+        AtomicInteger counter = new AtomicInteger();
+        dispatcher.start();
+        for (int i = 1; i <= 10; i++) {
+            // 等到派发线程挂起再发布，发布必须唤醒它
+            await(() -> dispatcher.sleeping == 1);
+            Assertions.assertTrue(dispatcher.offer(new Item(0, i), item -> counter.incrementAndGet()));
+            int expected = i;
+            await(() -> counter.get() == expected);
+        }
+        dispatcher.stop();
+    }
+
+    @Test
+    public void testRestart() throws InterruptedException {
+        JEventBus.RingDispatcher<Item> dispatcher = new JEventBus.RingDispatcher<>("ring-restart", 16, WaitStrategy.SPIN_THEN_PARK);
+        AtomicInteger counter = new AtomicInteger();
+        Consumer<Item> consumer = item -> counter.incrementAndGet();
+        dispatcher.start();
+        Assertions.assertTrue(dispatcher.offer(new Item(0, 0), consumer));
+        await(() -> counter.get() == 1 && dispatcher.sleeping == 1);
+        Thread thread = dispatcher.thread;
+        dispatcher.stop();
+        thread.join(1000);
+        Assertions.assertFalse(thread.isAlive());
+        // 停止期间入队的事件在重新启动后派发
+        for (int i = 1; i <= 16; i++) {
+            Assertions.assertTrue(dispatcher.offer(new Item(0, i), consumer));
+        }
+        Assertions.assertFalse(dispatcher.offer(new Item(0, 17), consumer));
+        dispatcher.start();
+        await(() -> counter.get() == 17);
+        dispatcher.stop();
+    }
+
+    /**
+     * 多个生产者并发发布，检查每个生产者的事件不丢失、不重复并且保持顺序
+     *
+     * @param dispatcher 发布线程
+     * @param producers  生产者数量
+     * @param count      每个生产者的事件数
+     * @throws InterruptedException 中断异常
+     */
+    protected void deliver(final JEventBus.RingDispatcher<Item> dispatcher, final int producers, final int count)
+            throws InterruptedException {
+        int[] expected = new int[producers];
+        AtomicInteger errors = new AtomicInteger();
+        AtomicInteger received = new AtomicInteger();
+        // 只有派发线程访问expected
+        Consumer<Item> consumer = item -> {
+            if (expected[item.producer]++ != item.value) {
+                errors.incrementAndGet();
+            }
+            received.incrementAndGet();
+        };
+        dispatcher.start();
+        CountDownLatch latch = new CountDownLatch(producers);
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            new Thread(() -> {
+                for (int i = 0; i < count; i++) {
+                    Item item = new Item(producer, i);
+                    while (!dispatcher.offer(item, consumer)) {
+                        Thread.yield();
+                    }
+                }
+                latch.countDown();
+            }).start();
+        }
+        Assertions.assertTrue(latch.await(30, TimeUnit.SECONDS));
+        await(() -> received.get() == producers * count);
+        dispatcher.stop();
+        Assertions.assertEquals(0, errors.get(), dispatcher.name);
+        for (int p = 0; p < producers; p++) {
+            Assertions.assertEquals(count, expected[p], dispatcher.name);
+        }
+        // 多次绕圈
+        Assertions.assertTrue(dispatcher.claimed >= dispatcher.entries.length * 10L);
+    }
+
+    /**
+     * 等待条件成立
+     *
+     * @param condition 条件
+     * @throws InterruptedException 中断异常
+     */
+    protected void await(final BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            Assertions.assertTrue(System.nanoTime() < deadline, "timeout");
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * 事件
+     */
+    protected static class Item implements Event {
+        /**
+         * 生产者
+         */
+        protected final int producer;
+        /**
+         * 生产者内的序号
+         */
+        protected final int value;
+
+        public Item(final int producer, final int value) {
+            this.producer = producer;
+            this.value = value;
+        }
+    }
+}
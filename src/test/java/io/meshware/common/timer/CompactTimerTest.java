@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.meshware.common.timer;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 紧凑时间轮的测试
+ */
+public class CompactTimerTest {
+
+    @Test
+    public void testEarliest() {
+        ManualClock clock = new ManualClock(0);
+        CompactTimer timer = new CompactTimer(clock, 1, 16, id -> {
+        });
+        Assertions.assertEquals(Long.MAX_VALUE, timer.earliest());
+        timer.delay(1, 5000);
+        // 上层的条目在级联的跳数推进
+        Assertions.assertEquals(4096, timer.earliest());
+        timer.delay(2, 100);
+        Assertions.assertEquals(64, timer.earliest());
+        timer.delay(3, 10);
+        Assertions.assertEquals(10, timer.earliest());
+        clock.set(10);
+        Assertions.assertEquals(1, timer.advance());
+        Assertions.assertEquals(64, timer.earliest());
+    }
+
+    @Test
+    public void testAdvanceOnlyInManualMode() {
+        CompactTimer timer = new CompactTimer("compact", 1, 16, id -> {
+        });
+        Assertions.assertThrows(IllegalStateException.class, timer::advance);
+    }
+
+    @Test
+    public void testWakeupOnEarlierEntry() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        CompactTimer timer = new CompactTimer("compact", 1, 16, id -> latch.countDown());
+        awaitSleeping(timer);
+        timer.delay(1, 60000);
+        awaitSleeping(timer);
+        long start = System.nanoTime();
+        timer.delay(2, 20);
+        Assertions.assertTrue(latch.await(1, TimeUnit.SECONDS));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        Assertions.assertTrue(elapsed >= 19 && elapsed < 500, "elapsed " + elapsed + "ms");
+        Assertions.assertEquals(1, timer.size());
+    }
+
+    /**
+     * 等待调度线程进入等待
+     *
+     * @param timer 紧凑时间轮
+     * @throws InterruptedException 中断异常
+     */
+    protected void awaitSleeping(final CompactTimer timer) throws InterruptedException {
+        for (int i = 0; i < 100 && timer.sleeping == 0; i++) {
+            Thread.sleep(10);
+        }
+        Assertions.assertEquals(1, timer.sleeping);
+    }
+}
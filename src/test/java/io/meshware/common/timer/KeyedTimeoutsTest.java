@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.meshware.common.timer;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 可刷新超时的测试
+ */
+public class KeyedTimeoutsTest {
+
+    @Test
+    public void testTouch() {
+        ManualTimer timer = new ManualTimer();
+        List<String> expired = new ArrayList<>();
+        KeyedTimeouts<String> timeouts = timer.keyed("idle", expired::add);
+        Assertions.assertTrue(timeouts.touch("a", 100));
+        Assertions.assertTrue(timeouts.touch("b", 100));
+        timer.advance(50);
+        // 原地推后，不新建任务
+        Assertions.assertFalse(timeouts.touch("a", 200));
+        Assertions.assertEquals(2, timer.getTasks());
+        timer.advance(60);
+        Assertions.assertEquals(1, expired.size());
+        Assertions.assertEquals("b", expired.get(0));
+        timer.advance(100);
+        Assertions.assertEquals(2, expired.size());
+        Assertions.assertEquals(0, timeouts.size());
+        Assertions.assertEquals(0, timer.getTasks());
+    }
+
+    @Test
+    public void testTouchWhileExpiring() {
+        ManualTimer timer = new ManualTimer();
+        List<String> expired = new ArrayList<>();
+        AtomicReference<KeyedTimeouts<String>> holder = new AtomicReference<>();
+        holder.set(timer.keyed("idle", key -> {
+            expired.add(key);
+            // 已经开始过期，刷新只能新建任务
+            Assertions.assertTrue(holder.get().touch(key, timer.getClock().now() + 100));
+        }));
+        holder.get().touch("a", 100);
+        timer.advance(150);
+        Assertions.assertEquals(1, expired.size());
+        Assertions.assertEquals(1, holder.get().size());
+        timer.advance(100);
+        Assertions.assertEquals(2, expired.size());
+    }
+}
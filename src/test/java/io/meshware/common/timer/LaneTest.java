@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.meshware.common.timer;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 执行通道的测试
+ */
+public class LaneTest {
+
+    @Test
+    public void testFullLaneNeverRunsOnTickThread() throws InterruptedException {
+        Timer timer = Timer.builder().name("lane").lane(Lane.BLOCKING, 1, 1).build();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        String[] threads = new String[3];
+        for (int i = 0; i < 3; i++) {
+            int index = i;
+            timer.add(new Blocking(() -> {
+                threads[index] = Thread.currentThread().getName();
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        }
+        Assertions.assertTrue(started.await(1, TimeUnit.SECONDS));
+        // 阻塞通道已满，超时回调仍然按时执行
+        CountDownLatch timeout = new CountDownLatch(1);
+        long start = System.nanoTime();
+        timer.delay("timeout", 5, timeout::countDown);
+        Assertions.assertTrue(timeout.await(1, TimeUnit.SECONDS));
+        Assertions.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 500);
+        Assertions.assertEquals(1, timer.getMetrics().getRejections());
+        release.countDown();
+        Thread.sleep(100);
+        Assertions.assertEquals(0, timer.getTasks());
+        for (String thread : threads) {
+            Assertions.assertTrue(thread == null || thread.startsWith("lane-blocking"), "ran on " + thread);
+        }
+    }
+
+    @Test
+    public void testQueueSize() throws InterruptedException {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Timer.builder().lane(Lane.BLOCKING, 1, -1).build());
+        Timer timer = Timer.builder().name("handoff").lane(Lane.BLOCKING, 1, 0).build();
+        CountDownLatch latch = new CountDownLatch(1);
+        timer.add(new Blocking(latch::countDown));
+        Assertions.assertTrue(latch.await(1, TimeUnit.SECONDS));
+    }
+
+    /**
+     * 阻塞通道的延迟任务
+     */
+    protected static class Blocking implements DelayTask {
+
+        protected final Runnable runnable;
+
+        public Blocking(final Runnable runnable) {
+            this.runnable = runnable;
+        }
+
+        @Override
+        public String getName() {
+            return "blocking";
+        }
+
+        @Override
+        public long getTime() {
+            return 1;
+        }
+
+        @Override
+        public Lane getLane() {
+            return Lane.BLOCKING;
+        }
+
+        @Override
+        public void run() {
+            runnable.run();
+        }
+    }
+}
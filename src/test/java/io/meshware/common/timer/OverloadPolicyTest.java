@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.meshware.common.timer;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 过载策略的测试
+ */
+public class OverloadPolicyTest {
+
+    @Test
+    public void testInvalidConfig() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> Timer.builder().shed(0.8, "refresh-").build());
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> Timer.builder().maxTasks(16).shed(0, "refresh-").build());
+    }
+
+    @Test
+    public void testFullWorkerQueueNeverRunsOnTickThread() throws InterruptedException {
+        Timer timer = Timer.builder().name("worker").workerThreads(1).workerQueue(1).maxTasks(100)
+                .overload(OverloadPolicy.CALLER_RUNS).build();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        String[] threads = new String[3];
+        for (int i = 0; i < 3; i++) {
+            int index = i;
+            timer.delay("blocking", 1, () -> {
+                threads[index] = Thread.currentThread().getName();
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        Assertions.assertTrue(started.await(1, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        // 工作线程和队列都已经占满，第三个任务被拒绝
+        Assertions.assertEquals(1, timer.getMetrics().getRejections());
+        release.countDown();
+        Thread.sleep(100);
+        Assertions.assertEquals(0, timer.getTasks());
+        for (String thread : threads) {
+            Assertions.assertTrue(thread == null || thread.startsWith("worker-worker"), "ran on " + thread);
+        }
+    }
+
+    @Test
+    public void testDiscardFurthest() throws InterruptedException {
+        Timer timer = Timer.builder().name("overload").maxTasks(2).overload(OverloadPolicy.DISCARD_FURTHEST).build();
+        Runnable runnable = () -> {
+        };
+        Timeout near = timer.delay("near", 10000, runnable);
+        Timeout far = timer.delay("far", 20000, runnable);
+        awaitWheel(timer);
+        Timeout added = timer.delay("added", 15000, runnable);
+        Assertions.assertTrue(far.isCancelled());
+        Assertions.assertFalse(near.isCancelled());
+        Assertions.assertFalse(added.isCancelled());
+        // 新增任务本身最远，放弃新增的任务
+        Assertions.assertTrue(timer.delay("furthest", 30000, runnable).isCancelled());
+        Assertions.assertEquals(2, timer.getTasks());
+    }
+
+    @Test
+    public void testVictimIsGenerationChecked() throws InterruptedException {
+        Timer timer = Timer.builder().name("overload").maxTasks(16).overload(OverloadPolicy.DISCARD_FURTHEST).build();
+        Runnable runnable = () -> {
+        };
+        long handle = timer.schedule("old", 10000, runnable);
+        awaitWheel(timer);
+        Timer.Victim victim = timer.getFurthest();
+        Assertions.assertNotNull(victim.task);
+        // 选中之后任务被放弃、回收并且复用
+        Assertions.assertTrue(timer.cancel(handle));
+        long reused = timer.schedule("new", 10000, runnable);
+        Assertions.assertEquals((int) handle, (int) reused);
+        Assertions.assertFalse(victim.cancel());
+        Assertions.assertTrue(timer.cancel(reused));
+    }
+
+    /**
+     * 等待新增的任务全部放入时间轮
+     *
+     * @param timer 定时器
+     * @throws InterruptedException 中断异常
+     */
+    protected void awaitWheel(final Timer timer) throws InterruptedException {
+        for (int i = 0; i < 100 && timer.getMetrics().getFlying() > 0; i++) {
+            Thread.sleep(10);
+        }
+        Assertions.assertEquals(0, timer.getMetrics().getFlying());
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.meshware.common.timer;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 合并周期桶的测试
+ */
+public class PeriodicBucketTest {
+
+    @Test
+    public void testTickInChunks() throws InterruptedException {
+        Timer timer = Timer.builder().name("bucket").build();
+        PeriodicBucket bucket = timer.bucket("chunks", 3600000, 2);
+        AtomicInteger counter = new AtomicInteger();
+        for (int i = 0; i < 5; i++) {
+            bucket.register(counter::incrementAndGet);
+        }
+        for (int round = 1; round <= 3; round++) {
+            bucket.tick();
+            awaitIdle(bucket);
+            Assertions.assertEquals(round * 5, counter.get());
+            for (PeriodicBucket.Member member : bucket.snapshot) {
+                Assertions.assertNull(member);
+            }
+        }
+        Assertions.assertEquals(0, bucket.getOverruns());
+        bucket.close();
+    }
+
+    @Test
+    public void testClearedSnapshot() {
+        Timer timer = Timer.builder().name("bucket").build();
+        PeriodicBucket bucket = timer.bucket("cleared", 3600000, 0);
+        AtomicInteger counter = new AtomicInteger();
+        bucket.register(counter::incrementAndGet);
+        // 快照在执行之前被清理，不能抛出异常，也不能让分块数无法归零
+        bucket.pending.set(2);
+        bucket.run(0, 1, 1);
+        Assertions.assertEquals(0, bucket.pending.get());
+        Assertions.assertEquals(0, counter.get());
+        bucket.tick();
+        Assertions.assertEquals(1, counter.get());
+        Assertions.assertEquals(0, bucket.pending.get());
+        bucket.close();
+    }
+
+    @Test
+    public void testRejectedChunk() throws InterruptedException {
+        Timer timer = Timer.builder().name("bucket").lane(Lane.NORMAL, 1, 0).build();
+        PeriodicBucket bucket = timer.bucket("rejected", 3600000, 1);
+        Thread current = Thread.currentThread();
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> ran = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            int index = i;
+            bucket.register(() -> {
+                ran.add(index);
+                if (Thread.currentThread() != current) {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        }
+        // 第二块占用唯一的通道线程，第三块被拒绝，不能在当前线程执行
+        bucket.tick();
+        Assertions.assertEquals(1, bucket.getOverruns());
+        Assertions.assertFalse(ran.contains(2));
+        release.countDown();
+        awaitIdle(bucket);
+        Assertions.assertFalse(ran.contains(2));
+        Assertions.assertEquals(2, ran.size());
+        bucket.close();
+    }
+
+    /**
+     * 等待本周期执行完毕
+     *
+     * @param bucket 周期桶
+     * @throws InterruptedException 中断异常
+     */
+    protected void awaitIdle(final PeriodicBucket bucket) throws InterruptedException {
+        for (int i = 0; i < 100 && bucket.pending.get() > 0; i++) {
+            Thread.sleep(10);
+        }
+        Assertions.assertEquals(0, bucket.pending.get());
+    }
+}
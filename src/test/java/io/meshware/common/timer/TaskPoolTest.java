@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.meshware.common.timer;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 可回收任务池和零分配调度的测试
+ */
+public class TaskPoolTest {
+
+    /**
+     * 预热和测量的次数
+     */
+    protected static final int COUNT = 200000;
+
+    @Test
+    public void testScheduleAndExpireAllocatesNothing() {
+        ManualTimer timer = new ManualTimer();
+        Runnable runnable = () -> {
+        };
+        scheduleAndExpire(timer, runnable);
+        long allocated = allocated();
+        scheduleAndExpire(timer, runnable);
+        allocated = allocated() - allocated;
+        Assertions.assertEquals(0, timer.getTasks());
+        Assertions.assertTrue(allocated < COUNT, "allocated " + allocated + " bytes for " + COUNT + " timeouts");
+    }
+
+    @Test
+    public void testScheduleAndCancelAllocatesNothing() {
+        ManualTimer timer = new ManualTimer();
+        Runnable runnable = () -> {
+        };
+        scheduleAndCancel(timer, runnable);
+        long allocated = allocated();
+        scheduleAndCancel(timer, runnable);
+        allocated = allocated() - allocated;
+        Assertions.assertEquals(0, timer.getTasks());
+        Assertions.assertTrue(allocated < COUNT, "allocated " + allocated + " bytes for " + COUNT + " timeouts");
+    }
+
+    @Test
+    public void testLateCancel() {
+        ManualTimer timer = new ManualTimer();
+        int[] counter = new int[1];
+        long handle = timer.schedule("test", 10, () -> counter[0]++);
+        timer.advance(20);
+        Assertions.assertEquals(1, counter[0]);
+        long reused = timer.schedule("test", 10, () -> counter[0]++);
+        // 复用同一个任务对象，旧句柄失效
+        Assertions.assertEquals((int) handle, (int) reused);
+        Assertions.assertFalse(timer.cancel(handle));
+        Assertions.assertTrue(timer.cancel(reused));
+        Assertions.assertFalse(timer.cancel(reused));
+        timer.advance(20);
+        Assertions.assertEquals(1, counter[0]);
+    }
+
+    @Test
+    public void testCancelAfterDispatch() throws InterruptedException {
+        BlockingQueue<Runnable> dispatched = new LinkedBlockingQueue<>();
+        Timer timer = Timer.builder().name("test").executor(dispatched::add).build();
+        long handle = timer.schedule("test", 1, () -> {
+        });
+        Runnable task = dispatched.poll(1, TimeUnit.SECONDS);
+        Assertions.assertNotNull(task);
+        // 已经离开时间轮，放弃时摘除失败，执行时回收
+        Assertions.assertTrue(timer.cancel(handle));
+        task.run();
+        Assertions.assertEquals(0, timer.getTasks());
+        Assertions.assertSame(task, timer.pool.acquire());
+    }
+
+    @Test
+    public void testSharedPoolIsBounded() throws InterruptedException {
+        Timer.TaskPool pool = new Timer.TaskPool(Timer.TaskPool.BATCH);
+        int count = Timer.TaskPool.LOCAL_CAPACITY + Timer.TaskPool.BATCH * 4;
+        Timer.Task[] tasks = new Timer.Task[count];
+        long[] handles = new long[count];
+        for (int i = 0; i < count; i++) {
+            tasks[i] = pool.acquire();
+            handles[i] = tasks[i].getHandle();
+        }
+        // 其它线程归还的任务进入共享池，超出容量的任务退役
+        Thread thread = new Thread(() -> {
+            for (Timer.Task task : tasks) {
+                pool.release(task);
+            }
+        });
+        thread.start();
+        thread.join();
+        Assertions.assertEquals(Timer.TaskPool.BATCH, pool.shared.size);
+        Assertions.assertEquals(count - Timer.TaskPool.BATCH, pool.freeSize);
+        for (long handle : handles) {
+            Timer.Task task = pool.get(handle);
+            Assertions.assertTrue(task == null || (task.getHandle() >>> 32) != (handle >>> 32));
+        }
+        // 复用退役任务的序号，代数接着增长，旧句柄不会误伤新任务
+        for (int i = 0; i < count; i++) {
+            Timer.Task task = pool.acquire();
+            Assertions.assertNotEquals(handles[task.id], task.getHandle());
+        }
+    }
+
+    /**
+     * 添加可回收的任务并全部过期
+     *
+     * @param timer    定时器
+     * @param runnable 执行任务
+     */
+    protected void scheduleAndExpire(final ManualTimer timer, final Runnable runnable) {
+        for (int i = 0; i < COUNT; i++) {
+            timer.schedule("test", 1 + (i & 1023), runnable);
+            if ((i & 63) == 63) {
+                timer.advance(1);
+            }
+        }
+        timer.advance(2048);
+    }
+
+    /**
+     * 添加可回收的任务后立即放弃
+     *
+     * @param timer    定时器
+     * @param runnable 执行任务
+     */
+    protected void scheduleAndCancel(final ManualTimer timer, final Runnable runnable) {
+        for (int i = 0; i < COUNT; i++) {
+            timer.cancel(timer.schedule("test", 1 + (i & 1023), runnable));
+            if ((i & 63) == 63) {
+                timer.advance(1);
+            }
+        }
+        timer.advance(2048);
+    }
+
+    /**
+     * 当前线程累计分配的字节数
+     *
+     * @return 字节数
+     */
+    protected static long allocated() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
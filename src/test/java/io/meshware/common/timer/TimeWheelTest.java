@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.meshware.common.timer;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 时间轮的测试
+ */
+public class TimeWheelTest {
+
+    @Test
+    public void testSlotDelayInClockUnit() {
+        Clock clock = Clock.MICROS;
+        TimeWheel wheel = new TimeWheel(1000, 512, clock.now(), new DelayQueue<>(), false, clock);
+        TimeWheel.Slot slot = new TimeWheel.Slot(wheel);
+        slot.expiration = clock.now() + 5000000;
+        long delay = slot.getDelay(TimeUnit.MILLISECONDS);
+        Assertions.assertTrue(delay > 4000 && delay <= 5000, "delay " + delay + "ms");
+    }
+
+    @Test
+    public void testDelayQueueWithMicrosClock() throws InterruptedException {
+        Timer timer = Timer.builder().name("micros").clock(Clock.MICROS).tickTime(1000).build();
+        CountDownLatch latch = new CountDownLatch(1);
+        long start = System.nanoTime();
+        timer.delay("test", 20, latch::countDown);
+        Assertions.assertTrue(latch.await(1, TimeUnit.SECONDS));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        Assertions.assertTrue(elapsed >= 19 && elapsed < 500, "elapsed " + elapsed + "ms");
+    }
+}
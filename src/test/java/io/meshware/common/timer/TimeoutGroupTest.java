@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.meshware.common.timer;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 超时分组的测试
+ */
+public class TimeoutGroupTest {
+
+    @Test
+    public void testCancelGroup() {
+        ManualTimer timer = new ManualTimer();
+        TimeoutGroup group = timer.group();
+        int[] counter = new int[1];
+        Timeout first = group.delay("test", 10, () -> counter[0]++);
+        Timeout second = group.delay("test", 20, () -> counter[0]++);
+        Assertions.assertEquals(2, timer.getTasks());
+        group.cancel();
+        Assertions.assertTrue(first.isCancelled());
+        // 分组已经整体放弃，单独放弃不再成功
+        Assertions.assertFalse(first.cancel());
+        Assertions.assertFalse(second.cancel());
+        Timeout third = group.delay("test", 10, () -> counter[0]++);
+        timer.advance(30);
+        Assertions.assertEquals(1, counter[0]);
+        Assertions.assertTrue(third.isExpired());
+        Assertions.assertEquals(0, timer.getTasks());
+    }
+
+    @Test
+    public void testDelayWithHighResolution() throws InterruptedException {
+        Timer timer = Timer.builder().name("group-micros").highResolution(100).build();
+        TimeoutGroup group = timer.group();
+        CountDownLatch latch = new CountDownLatch(1);
+        long start = System.nanoTime();
+        group.delay("test", 20, latch::countDown);
+        Assertions.assertTrue(latch.await(1, TimeUnit.SECONDS));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        Assertions.assertTrue(elapsed >= 19 && elapsed < 500, "elapsed " + elapsed + "ms");
+    }
+}
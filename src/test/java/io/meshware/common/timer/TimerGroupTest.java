@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.meshware.common.timer;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 定时器分组的测试
+ */
+public class TimerGroupTest {
+
+    @Test
+    public void testConflictingConfig() {
+        TimerGroup group = TimerGroup.builder().name("test-group").tickTime(5).ticks(128).build();
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Timer.builder().group(group).shards(4).build());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Timer.builder().group(group).tickTime(10).build());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Timer.builder().group(group).ticks(64).build());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Timer.builder().group(group).clock(Clock.MICROS).build());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Timer.builder().group(group).driver(Timer.Driver.MANUAL).build());
+        // 显式指定的默认值与分组不一致也会冲突
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Timer.builder().group(group).tickTime(1).build());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Timer.builder().group(group).ticks(512).build());
+        // 与分组一致或者未指定的配置可以加入
+        Timer timer = Timer.builder().group(group).tickTime(5).ticks(128).build();
+        Assertions.assertEquals(5, timer.tickTime);
+        Assertions.assertEquals(1, timer.getShards());
+        Assertions.assertEquals(Timer.Driver.BUCKET, timer.driver);
+    }
+
+    @Test
+    public void testSharedTickThread() throws InterruptedException {
+        TimerGroup group = TimerGroup.builder().name("test-group").build();
+        Timer first = Timer.builder().name("first").group(group).build();
+        Timer second = Timer.builder().name("second").group(group).maxTasks(1).build();
+        CountDownLatch latch = new CountDownLatch(2);
+        first.delay("first", 10, latch::countDown);
+        second.delay("second", 10, latch::countDown);
+        Assertions.assertTrue(latch.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testRemove() {
+        TimerGroup group = TimerGroup.builder().name("test-group").build();
+        Timer timer = Timer.builder().name("removed").group(group).build();
+        Runnable runnable = () -> {
+        };
+        Timeout timeout = timer.delay("before", 10000, runnable);
+        Assertions.assertTrue(group.remove(timer));
+        Assertions.assertFalse(group.remove(timer));
+        Assertions.assertEquals(0, group.size());
+        Assertions.assertThrows(IllegalStateException.class, () -> timer.delay("after", 10, runnable));
+        Assertions.assertThrows(IllegalStateException.class, () -> timer.schedule("after", 10, runnable));
+        Assertions.assertThrows(IllegalStateException.class, () -> timer.schedulePeriodic("after", 10, 10,
+                ScheduleMode.FIXED_RATE, runnable));
+        Assertions.assertTrue(timeout.cancel());
+    }
+}
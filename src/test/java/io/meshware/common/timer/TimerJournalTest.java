@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.meshware.common.timer;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 定时器持久化日志的测试
+ */
+public class TimerJournalTest {
+
+    @Test
+    public void testRecover() throws IOException {
+        File directory = Files.createTempDirectory("journal").toFile();
+        TimerJournal journal = TimerJournal.builder().directory(directory).segmentSize(4096).build();
+        Assertions.assertTrue(journal.recover().isEmpty());
+        long first = journal.schedule(new Job("first"), 1000);
+        long second = journal.schedule(new Job("second"), 2000);
+        long third = journal.schedule(new Job("third"), 3000);
+        journal.cancel(second);
+        // 不关闭，模拟进程崩溃，映射的写入已经在页缓存里
+        TimerJournal recovered = TimerJournal.builder().directory(directory).segmentSize(4096).build();
+        List<TimerJournal.Entry> entries = recovered.recover();
+        Assertions.assertEquals(2, entries.size());
+        Assertions.assertEquals(first, entries.get(0).id);
+        Assertions.assertEquals(1000, entries.get(0).time);
+        Assertions.assertEquals("first", entries.get(0).task.getName());
+        Assertions.assertEquals(third, entries.get(1).id);
+        Assertions.assertEquals("third", entries.get(1).task.getName());
+        // 编号在恢复后继续递增
+        Assertions.assertTrue(recovered.schedule(new Job("fourth"), 4000) > third);
+        journal.close();
+        recovered.close();
+    }
+
+    @Test
+    public void testTornRecord() throws IOException {
+        File directory = Files.createTempDirectory("journal").toFile();
+        TimerJournal journal = TimerJournal.builder().directory(directory).segmentSize(4096).build();
+        journal.recover();
+        journal.schedule(new Job("first"), 1000);
+        journal.schedule(new Job("second"), 2000);
+        journal.schedule(new Job("third"), 3000);
+        journal.close();
+        File file = journal.getFile(0);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            int first = raf.readInt();
+            raf.seek(TimerJournal.HEADER + first);
+            int second = raf.readInt();
+            // 第二条记录只写了一部分，任务的最后一个字节没有落盘
+            long last = 2L * TimerJournal.HEADER + first + second - 1;
+            raf.seek(last);
+            int value = raf.read();
+            raf.seek(last);
+            raf.write(value ^ 0xFF);
+        }
+        TimerJournal recovered = TimerJournal.builder().directory(directory).segmentSize(4096).build();
+        List<TimerJournal.Entry> entries = recovered.recover();
+        // 校验失败的记录及之后的记录都被丢弃
+        Assertions.assertEquals(1, entries.size());
+        Assertions.assertEquals("first", entries.get(0).task.getName());
+        recovered.close();
+    }
+
+    @Test
+    public void testCompactUnmapsSegments() throws IOException, InterruptedException {
+        File directory = Files.createTempDirectory("journal").toFile();
+        TimerJournal journal = TimerJournal.builder().directory(directory).segmentSize(1024).flushInterval(1).build();
+        journal.recover();
+        List<TimerJournal.Segment> segments = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            journal.cancel(journal.schedule(new Job("job-" + i), 1000));
+            if (!segments.contains(journal.tail)) {
+                segments.add(journal.tail);
+            }
+        }
+        Assertions.assertTrue(segments.size() > 3);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (journal.getSegments() > 1 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        Assertions.assertEquals(1, journal.getSegments());
+        for (TimerJournal.Segment segment : segments) {
+            if (segment != journal.tail) {
+                Assertions.assertTrue(segment.unmapped);
+                Assertions.assertFalse(segment.file.exists());
+            }
+        }
+        TimerJournal.Segment tail = journal.tail;
+        journal.close();
+        Assertions.assertTrue(tail.unmapped);
+        Assertions.assertNotNull(TimerJournal.UNMAPPER);
+    }
+
+    /**
+     * 可序列化的任务
+     */
+    protected static class Job implements TimeTask, Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final String name;
+
+        public Job(final String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public long getTime() {
+            return 0;
+        }
+
+        @Override
+        public void run() {
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.meshware.common.timer;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * 定时器的测试
+ */
+public class TimerTest {
+
+    @Test
+    public void testBucketDriverDoesNotSpin() throws InterruptedException {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assertions.assertTrue(bean.isCurrentThreadCpuTimeSupported());
+        Timer timer = Timer.builder().name("no-spin").driver(Timer.Driver.BUCKET).build();
+        Timeout timeout = timer.schedulePeriodic("periodic", 1, 1, ScheduleMode.FIXED_RATE, () -> {
+        });
+        Thread.sleep(100);
+        long id = -1;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("no-spin-boss")) {
+                id = thread.getId();
+            }
+        }
+        Assertions.assertTrue(id > 0);
+        long cpu = bean.getThreadCpuTime(id);
+        long start = System.nanoTime();
+        Thread.sleep(500);
+        long percent = 100 * (bean.getThreadCpuTime(id) - cpu) / (System.nanoTime() - start);
+        timeout.cancel();
+        // 缓存的时钟每毫秒刷新，park醒来后自旋等待时钟会占用大约一半的CPU
+        Assertions.assertTrue(percent < 25, "boss thread cpu " + percent + "%");
+    }
+}